@@ -0,0 +1,59 @@
+package com.banck.accountmovements.benchmark;
+
+import com.banck.accountmovements.domain.Movement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+
+/**
+ * Suma del saldo sobre un Flux de movimientos: la suma en double con
+ * Collectors.summingDouble que se usaba antes frente a la suma en centimos
+ * sobre un long[].
+ *
+ * @author jonavcar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BalanceSummationBenchmark {
+
+    @Param({"10000", "100000"})
+    int size;
+
+    List<Movement> history;
+
+    @Setup
+    public void setup() {
+        history = Movements.history(size);
+    }
+
+    @Benchmark
+    public double summingDouble() {
+        return Flux.fromIterable(history)
+                .collect(Collectors.summingDouble(m -> m.getAmount()))
+                .block();
+    }
+
+    @Benchmark
+    public long summingMinorUnits() {
+        return Flux.fromIterable(history)
+                .collect(() -> new long[1], (sum, m) -> sum[0] += m.getAmountMinor())
+                .map(sum -> sum[0])
+                .block();
+    }
+}
@@ -0,0 +1,43 @@
+package com.banck.accountmovements.benchmark;
+
+import com.banck.accountmovements.utils.Concept;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Busqueda de un codigo de concepto recorriendo Concept.values(), como lo
+ * hace la validacion de movimientos.
+ *
+ * @author jonavcar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConceptLookupBenchmark {
+
+    @Param({"DP", "TF", "XX"})
+    String code;
+
+    @Benchmark
+    public boolean valuesLoop() {
+        boolean isConcept = false;
+        for (Concept tc : Concept.values()) {
+            if (code.equals(tc.value)) {
+                isConcept = true;
+            }
+        }
+        return isConcept;
+    }
+}
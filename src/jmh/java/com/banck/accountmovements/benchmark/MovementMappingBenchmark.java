@@ -0,0 +1,50 @@
+package com.banck.accountmovements.benchmark;
+
+import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.infraestructure.repository.MovementCrudRepository;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author jonavcar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MovementMappingBenchmark {
+
+    MovementCrudRepository repository;
+    Movement movement;
+    MovementDao movementDao;
+
+    @Setup
+    public void setup() {
+        repository = new MovementCrudRepository();
+        movement = Movements.sample(1);
+        movementDao = repository.MovementToMovementDao(movement);
+    }
+
+    @Benchmark
+    public MovementDao movementToMovementDao() {
+        return repository.MovementToMovementDao(movement);
+    }
+
+    @Benchmark
+    public Movement movementDaoToMovement() {
+        return repository.MovementDaoToMovement(movementDao);
+    }
+}
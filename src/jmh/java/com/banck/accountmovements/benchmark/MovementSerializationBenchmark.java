@@ -0,0 +1,50 @@
+package com.banck.accountmovements.benchmark;
+
+import com.banck.accountmovements.domain.Movement;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author jonavcar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MovementSerializationBenchmark {
+
+    ObjectMapper mapper;
+    Movement movement;
+    byte[] json;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        mapper = new ObjectMapper();
+        movement = Movements.sample(1);
+        json = mapper.writeValueAsBytes(movement);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(movement);
+    }
+
+    @Benchmark
+    public Movement deserialize() throws java.io.IOException {
+        return mapper.readValue(json, Movement.class);
+    }
+}
@@ -0,0 +1,45 @@
+package com.banck.accountmovements.benchmark;
+
+import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.utils.Concept;
+import com.banck.accountmovements.utils.MovementType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Movimientos de ejemplo para los benchmarks.
+ *
+ * @author jonavcar
+ */
+public final class Movements {
+
+    private Movements() {
+    }
+
+    public static Movement sample(int i) {
+        Movement m = new Movement();
+        m.setMovement(String.format("%019d", 1000000000000000L + i));
+        boolean payment = i % 3 != 0;
+        m.setConcept(payment ? Concept.PAYMENT.value : Concept.CHARGE.value);
+        m.setMovementType(payment ? MovementType.PAYMENT.value : MovementType.CHARGE.value);
+        m.setAccount("78345212-653");
+        m.setCustomer("78345212");
+        m.setTransferAccount("");
+        m.setTransferCustomer("");
+        m.setAmount(payment ? 300.50 : -120.25);
+        m.setObservations((payment ? "Deposito" : "Retiro") + " por la suma de " + m.getAmount());
+        m.setDate("18-10-2022");
+        m.setTime("10:15:30");
+        m.setTimestamp(1666106130000L + i);
+        m.setCorrect(true);
+        return m;
+    }
+
+    public static List<Movement> history(int size) {
+        List<Movement> movements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            movements.add(sample(i));
+        }
+        return movements;
+    }
+}
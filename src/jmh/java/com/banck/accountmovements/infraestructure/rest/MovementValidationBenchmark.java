@@ -0,0 +1,53 @@
+package com.banck.accountmovements.infraestructure.rest;
+
+import com.banck.accountmovements.benchmark.Movements;
+import com.banck.accountmovements.domain.Movement;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cadena de validacion de POST /account-movement para un deposito valido y
+ * para uno sin concepto.
+ *
+ * @author jonavcar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MovementValidationBenchmark {
+
+    MovementController controller;
+    Movement valid;
+    Movement invalid;
+
+    @Setup
+    public void setup() {
+        controller = new MovementController(null, null, null, null, null, null, null, null, null);
+        valid = Movements.sample(1);
+        invalid = Movements.sample(2);
+        invalid.setConcept(null);
+    }
+
+    @Benchmark
+    public Optional<String> validMovement() {
+        return controller.prepareMovement(valid);
+    }
+
+    @Benchmark
+    public Optional<String> missingConcept() {
+        return controller.prepareMovement(invalid);
+    }
+}
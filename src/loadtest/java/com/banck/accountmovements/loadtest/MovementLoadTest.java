@@ -0,0 +1,249 @@
+package com.banck.accountmovements.loadtest;
+
+import com.banck.accountmovements.aplication.model.MovementRepository;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Prueba de carga de extremo a extremo: levanta el servicio sobre un Mongo
+ * embebido y un stub local del microservicio de cuentas, y envia una mezcla de
+ * depositos, retiros, transferencias y consultas a un ritmo fijo. La latencia
+ * se mide desde el momento en que cada solicitud debia enviarse, no desde que
+ * se envio, para que la espera de las solicitudes atrasadas cuente.
+ *
+ * Parametros (-D): loadtest.rps, loadtest.duration, loadtest.accounts,
+ * loadtest.concurrency, loadtest.mix (create:50,other:15,my:15,list:20),
+ * loadtest.month-limit (movimientos por mes de cada cuenta, 1000) y
+ * loadtest.account-port (8081; 0 para un puerto libre). El binario de mongod
+ * se descarga la primera vez y queda en ~/.embedmongo, luego corre sin red.
+ *
+ * @author jonavcar
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.mongodb.embedded.version=5.0.5",
+    "spring.cloud.config.enabled=false",
+    "eureka.client.enabled=false",
+    "movement.id.node=1",
+    "movement.transfer.transactional=false"
+})
+class MovementLoadTest {
+
+    enum Operation {
+        CREATE, TRANSFER_OTHER, TRANSFER_MY, LIST
+    }
+
+    enum Outcome {
+        ACCEPTED, REJECTED, INSUFFICIENT_BALANCE, ERROR
+    }
+
+    static HttpServer accountService;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    MovementRepository movementRepository;
+
+    final int rps = Integer.getInteger("loadtest.rps", 200);
+    final Duration duration = Duration.parse("PT" + System.getProperty("loadtest.duration", "30s").toUpperCase());
+    final int customers = Integer.getInteger("loadtest.accounts", 50);
+    final int concurrency = Integer.getInteger("loadtest.concurrency", 256);
+    final String mix = System.getProperty("loadtest.mix", "create:50,other:15,my:15,list:20");
+    static final int MONTH_LIMIT = Integer.getInteger("loadtest.month-limit", 1000);
+
+    @DynamicPropertySource
+    static void accountService(DynamicPropertyRegistry registry) throws IOException {
+        accountService = HttpServer.create(new InetSocketAddress("localhost", Integer.getInteger("loadtest.account-port", 8081)), 0);
+        accountService.createContext("/account/", exchange -> {
+            String account = exchange.getRequestURI().getPath().substring("/account/".length());
+            // Cuentas de ahorro: con tope mensual, para que cada movimiento
+            // lea el conteo del mes, y sin dia fijo.
+            byte[] body = ("{\"account\":\"" + account + "\",\"topMMovem\":" + MONTH_LIMIT + ",\"dayMovem\":0,\"status\":true}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        accountService.setExecutor(Executors.newFixedThreadPool(4));
+        accountService.start();
+        registry.add("account.service.url", () -> "http://localhost:" + accountService.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopAccountService() {
+        accountService.stop(0);
+    }
+
+    @Test
+    void mixedLoad() {
+        WebClient client = WebClient.builder().baseUrl("http://localhost:" + port + "/account-movement").build();
+        List<String> accounts = new ArrayList<>();
+        for (int c = 0; c < customers; c++) {
+            accounts.add(account(c, 1));
+            accounts.add(account(c, 2));
+        }
+        Flux.fromIterable(accounts)
+                .flatMap(account -> post(client, "", "{\"concept\":\"DP\",\"customer\":\"" + customer(account)
+                + "\",\"account\":\"" + account + "\",\"amount\":1000}"), 16)
+                .blockLast();
+
+        Operation[] weighted = weighted(mix);
+        int total = (int) (rps * duration.getSeconds());
+        long[] latencies = new long[total];
+        AtomicInteger completed = new AtomicInteger();
+        Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+        for (Outcome o : Outcome.values()) {
+            outcomes.put(o, new LongAdder());
+        }
+        long interval = 1_000_000_000L / rps;
+
+        long start = System.nanoTime();
+        Flux.interval(Duration.ofNanos(interval))
+                .take(total)
+                .onBackpressureBuffer()
+                .flatMap(i -> {
+                    Operation operation = weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+                    long intended = start + (i + 1) * interval;
+                    return execute(client, operation).doOnNext(outcome -> {
+                        latencies[completed.getAndIncrement()] = System.nanoTime() - intended;
+                        outcomes.get(outcome).increment();
+                    });
+                }, concurrency)
+                .blockLast(duration.plusMinutes(2));
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long overdrafts = Flux.fromIterable(accounts)
+                .flatMap(account -> movementRepository.balanceByAccount(account))
+                .filter(balance -> balance < 0)
+                .count()
+                .block();
+
+        int n = completed.get();
+        long[] sorted = Arrays.copyOf(latencies, n);
+        Arrays.sort(sorted);
+        System.out.println("==== Movement load test ====");
+        System.out.printf("target rps: %d, duration: %s, accounts: %d, mix: %s%n", rps, duration, accounts.size(), mix);
+        System.out.printf("completed: %d, throughput: %.1f req/s%n", n, n / elapsed);
+        System.out.printf("latency ms p50: %.2f, p99: %.2f, p999: %.2f, max: %.2f%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999), percentile(sorted, 1.0));
+        outcomes.forEach((outcome, count) -> System.out.printf("%s: %d%n", outcome, count.sum()));
+        System.out.printf("overdrawn accounts: %d%n", overdrafts);
+
+        assertEquals(0, overdrafts, "Hay cuentas con saldo negativo");
+    }
+
+    Mono<Outcome> execute(WebClient client, Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int c = random.nextInt(customers);
+        String account = account(c, 1 + random.nextInt(2));
+        double amount = 1 + random.nextInt(30000) / 100.0;
+        switch (operation) {
+            case CREATE:
+                String concept = random.nextBoolean() ? "DP" : "RT";
+                return post(client, "", "{\"concept\":\"" + concept + "\",\"customer\":\"" + customer(account)
+                        + "\",\"account\":\"" + account + "\",\"amount\":" + amount + "}");
+            case TRANSFER_OTHER:
+                String target = account((c + 1 + random.nextInt(customers - 1)) % customers, 1);
+                return post(client, "/transfer/other-account", "{\"customer\":\"" + customer(account)
+                        + "\",\"account\":\"" + account + "\",\"transferAccount\":\"" + target
+                        + "\",\"transferCustomer\":\"" + customer(target) + "\",\"amount\":" + amount + "}");
+            case TRANSFER_MY:
+                String mine = account.endsWith("-1") ? account(c, 2) : account(c, 1);
+                return post(client, "/transfer/my-account", "{\"customer\":\"" + customer(account)
+                        + "\",\"account\":\"" + account + "\",\"transferAccount\":\"" + mine + "\",\"amount\":" + amount + "}");
+            default:
+                return client.get()
+                        .uri("/account/{id}/list?size=20", account)
+                        .exchangeToMono(r -> r.bodyToMono(String.class)
+                        .defaultIfEmpty("")
+                        .map(body -> r.statusCode().is2xxSuccessful() ? Outcome.ACCEPTED : Outcome.ERROR))
+                        .onErrorResume(e -> Mono.just(Outcome.ERROR));
+        }
+    }
+
+    Mono<Outcome> post(WebClient client, String path, String json) {
+        return client.post()
+                .uri(path)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(json)
+                .exchangeToMono(r -> r.bodyToMono(String.class).defaultIfEmpty("").map(body -> {
+                    if (!r.statusCode().is2xxSuccessful()) {
+                        return Outcome.ERROR;
+                    }
+                    if (body.contains("sobrepasa el saldo")) {
+                        return Outcome.INSUFFICIENT_BALANCE;
+                    }
+                    return body.startsWith("{") ? Outcome.ACCEPTED : Outcome.REJECTED;
+                }))
+                .onErrorResume(e -> Mono.just(Outcome.ERROR));
+    }
+
+    static Operation[] weighted(String mix) {
+        List<Operation> operations = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            Operation operation;
+            switch (parts[0]) {
+                case "create":
+                    operation = Operation.CREATE;
+                    break;
+                case "other":
+                    operation = Operation.TRANSFER_OTHER;
+                    break;
+                case "my":
+                    operation = Operation.TRANSFER_MY;
+                    break;
+                default:
+                    operation = Operation.LIST;
+            }
+            for (int i = 0; i < Integer.parseInt(parts[1]); i++) {
+                operations.add(operation);
+            }
+        }
+        return operations.toArray(new Operation[0]);
+    }
+
+    static String account(int customer, int number) {
+        return "LT" + customer + "-" + number;
+    }
+
+    static String customer(String account) {
+        return account.substring(0, account.indexOf('-'));
+    }
+
+    static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+}
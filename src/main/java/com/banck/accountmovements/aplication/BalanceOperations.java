@@ -0,0 +1,27 @@
+package com.banck.accountmovements.aplication;
+
+import com.banck.accountmovements.domain.Balance;
+import com.banck.accountmovements.domain.Statement;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ *
+ * @author jonavcar
+ */
+public interface BalanceOperations {
+
+    public Mono<Balance> get(String account);
+
+    public Mono<Long> available(String account);
+
+    public Flux<Balance> rebuild();
+
+    /**
+     * Saldo inicial, movimientos y saldo final de la cuenta entre dos
+     * timestamps.
+     */
+    public Mono<Statement> statement(String account, long fromTimestamp, long toTimestamp);
+
+    public Mono<Long> rebuildRollups();
+}
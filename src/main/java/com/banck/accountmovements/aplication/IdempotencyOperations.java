@@ -0,0 +1,29 @@
+package com.banck.accountmovements.aplication;
+
+import com.banck.accountmovements.domain.StoredResponse;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+
+/**
+ *
+ * @author jonavcar
+ */
+public interface IdempotencyOperations {
+
+    /**
+     * La clave ya se uso con otra solicitud, o su primera ejecucion sigue en
+     * curso despues de la espera.
+     */
+    public static class ConflictException extends RuntimeException {
+
+        public ConflictException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Ejecuta la operacion una sola vez por clave y devuelve la respuesta
+     * original a los reintentos con la misma solicitud.
+     */
+    public Mono<StoredResponse> execute(String key, String requestHash, Supplier<Mono<StoredResponse>> operation);
+}
@@ -0,0 +1,26 @@
+package com.banck.accountmovements.aplication;
+
+import com.banck.accountmovements.domain.AccountLimit;
+import java.util.Optional;
+import reactor.core.publisher.Mono;
+
+/**
+ *
+ * @author jonavcar
+ */
+public interface LimitOperations {
+
+    /**
+     * Consulta la cuenta y arma su limite para el mes del timestamp. Es una
+     * llamada remota: se hace antes de entrar al carril de la cuenta.
+     */
+    public Mono<AccountLimit> limit(String account, long timestamp);
+
+    /**
+     * Verifica que la cuenta admita movements movimientos mas en el mes del
+     * limite. Devuelve el mensaje de rechazo si no los admite. Solo lee el
+     * cierre mensual y se llama dentro del carril de la cuenta, antes de
+     * registrar.
+     */
+    public Mono<Optional<String>> check(AccountLimit limit, int movements);
+}
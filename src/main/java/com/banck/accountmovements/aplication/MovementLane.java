@@ -0,0 +1,21 @@
+package com.banck.accountmovements.aplication;
+
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * Ejecuta en orden las operaciones que modifican el saldo de una misma cuenta,
+ * dejando que cuentas distintas se procesen en paralelo.
+ *
+ * @author jonavcar
+ */
+public interface MovementLane {
+
+    public <T> Mono<T> execute(String account, Supplier<Mono<T>> operation);
+
+    /**
+     * Ejecuta una operacion que modifica el saldo de dos cuentas, como una
+     * transferencia, despues de las pendientes de ambas.
+     */
+    public <T> Mono<T> execute(String account, String other, Supplier<Mono<T>> operation);
+}
@@ -1,6 +1,9 @@
 package com.banck.accountmovements.aplication;
 
 import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.domain.MovementQuery;
+import com.banck.accountmovements.domain.MovementSummary;
+import java.util.List;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -12,18 +15,32 @@ public interface MovementOperations {
 
     public Flux<Movement> list();
 
+    public Flux<Movement> list(MovementQuery query);
+
     public Flux<Movement> listByCustomer(String customer);
 
     public Flux<Movement> listByAccount(String customer);
 
+    public Flux<Movement> listByCustomer(String customer, MovementQuery query);
+
+    public Flux<Movement> listByAccount(String account, MovementQuery query);
+
     public Flux<Movement> listByCustomerAndAccount(String customer, String account);
 
+    public Flux<Movement> listByCustomerAndAccount(String customer, String account, MovementQuery query);
+
     public Flux<Movement> listByCustomerAndAccountAndAccountType(String customer, String account, String accountType);
 
+    public Flux<MovementSummary> summaryByAccount(String account);
+
     public Mono<Movement> get(String movement);
 
     public Mono<Movement> create(Movement movement);
 
+    public Flux<Movement> createAll(List<Movement> movements);
+
+    public Mono<Movement> transfer(Movement charge, Movement payment);
+
     public Mono<Movement> update(String id, Movement movement);
 
     public void delete(String id);
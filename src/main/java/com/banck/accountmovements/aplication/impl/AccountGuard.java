@@ -0,0 +1,301 @@
+package com.banck.accountmovements.aplication.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Protege las llamadas al microservicio de cuentas: limita las llamadas
+ * simultaneas, corta cada llamada que supera timeout, abre el circuito cuando
+ * fallan demasiadas de las ultimas llamadas (timeouts, errores de conexion o
+ * respuestas 5xx) y, con hedge habilitado, lanza una segunda llamada si la
+ * primera tarda mas que el percentil configurado de las llamadas recientes,
+ * salvo que la primera ya haya fallado o el circuito no este cerrado. Las
+ * llamadas rechazadas fallan de inmediato con RejectedException.
+ *
+ * @author jonavcar
+ */
+@Component
+public class AccountGuard {
+
+    static final int LATENCY_SAMPLES = 256;
+    static final int LATENCY_REFRESH = 32;
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public static class RejectedException extends RuntimeException {
+
+        public RejectedException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    Logger logger = LoggerFactory.getLogger(AccountGuard.class);
+
+    private final MeterRegistry registry;
+    private final Duration timeout;
+    private final int maxConcurrent;
+    private final int failureRate;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final boolean hedgeEnabled;
+    private final double hedgePercentile;
+    private final long hedgeMinNanos;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final Counter bulkheadRejected;
+    private final Counter circuitRejected;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+
+    // Estado del circuito; se modifica solo dentro de los metodos synchronized.
+    private volatile State state = State.CLOSED;
+    // Cuenta las transiciones: el resultado de una llamada solo cuenta si
+    // termina en la misma epoca en que empezo.
+    private long epoch;
+    private long openedAt;
+    private int halfOpenStarted;
+    private int halfOpenSucceeded;
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCalls;
+    private int windowFailures;
+
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyIndex;
+    private long latencyCount;
+    private volatile long hedgeNanos;
+
+    public AccountGuard(MeterRegistry registry,
+            @Value("${account.resilience.timeout:1s}") Duration timeout,
+            @Value("${account.resilience.max-concurrent:64}") int maxConcurrent,
+            @Value("${account.resilience.failure-rate:50}") int failureRate,
+            @Value("${account.resilience.window:20}") int windowSize,
+            @Value("${account.resilience.minimum-calls:10}") int minimumCalls,
+            @Value("${account.resilience.open-duration:10s}") Duration openDuration,
+            @Value("${account.resilience.half-open-calls:3}") int halfOpenCalls,
+            @Value("${account.resilience.hedge.enabled:false}") boolean hedgeEnabled,
+            @Value("${account.resilience.hedge.percentile:0.95}") double hedgePercentile,
+            @Value("${account.resilience.hedge.min-delay:50ms}") Duration hedgeMinDelay) {
+        this.registry = registry;
+        this.timeout = timeout;
+        this.maxConcurrent = maxConcurrent;
+        this.failureRate = failureRate;
+        this.minimumCalls = minimumCalls;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinNanos = hedgeMinDelay.toNanos();
+        this.hedgeNanos = Math.max(hedgeMinNanos, timeout.toNanos() / 2);
+        this.window = new boolean[windowSize];
+
+        Gauge.builder("account.bulkhead.active", active, AtomicInteger::get).register(registry);
+        Gauge.builder("account.circuit.state", this, guard -> guard.state.ordinal())
+                .description("0 cerrado, 1 abierto, 2 semiabierto")
+                .register(registry);
+        Gauge.builder("account.hedge.delay", this, guard -> guard.hedgeNanos / 1e6)
+                .baseUnit("milliseconds")
+                .register(registry);
+        bulkheadRejected = registry.counter("account.calls.rejected", "reason", "bulkhead");
+        circuitRejected = registry.counter("account.calls.rejected", "reason", "circuit-open");
+        hedgesSent = registry.counter("account.hedge", "result", "sent");
+        hedgesWon = registry.counter("account.hedge", "result", "won");
+    }
+
+    public <T> Mono<T> call(Supplier<Mono<T>> call) {
+        if (!hedgeEnabled) {
+            return Mono.defer(() -> attempt(call));
+        }
+        return Mono.defer(() -> {
+            // Optional para que una respuesta vacia tambien gane la carrera.
+            Sinks.One<Throwable> primaryError = Sinks.one();
+            AtomicBoolean hedged = new AtomicBoolean();
+            Mono<Optional<T>> primary = attempt(call).map(Optional::of).defaultIfEmpty(Optional.empty())
+                    .doOnError(primaryError::tryEmitValue);
+            // Si la primera falla antes del retardo el hedge no sale.
+            Mono<Optional<T>> hedge = Mono.delay(Duration.ofNanos(hedgeNanos))
+                    .takeUntilOther(primaryError.asMono())
+                    .filter(tick -> state == State.CLOSED)
+                    .flatMap(tick -> {
+                        hedged.set(true);
+                        hedgesSent.increment();
+                        return attempt(call).map(Optional::of).defaultIfEmpty(Optional.empty());
+                    })
+                    .doOnNext(result -> hedgesWon.increment());
+            return Mono.firstWithValue(primary, hedge)
+                    // Sin hedge el error es el de la primera llamada.
+                    .onErrorResume(e -> hedged.get()
+                    ? Mono.error(e)
+                    : primaryError.asMono().flatMap(error -> Mono.<Optional<T>>error(error)))
+                    .flatMap(Mono::justOrEmpty);
+        });
+    }
+
+    private <T> Mono<T> attempt(Supplier<Mono<T>> call) {
+        if (active.incrementAndGet() > maxConcurrent) {
+            active.decrementAndGet();
+            bulkheadRejected.increment();
+            return Mono.error(new RejectedException("Demasiadas consultas simultaneas al servicio de cuentas"));
+        }
+        long started = acquire();
+        if (started < 0) {
+            active.decrementAndGet();
+            circuitRejected.increment();
+            return Mono.error(new RejectedException("Circuito abierto hacia el servicio de cuentas"));
+        }
+        long start = System.nanoTime();
+        return call.get()
+                .timeout(timeout)
+                .doOnSuccess(result -> succeeded(started, System.nanoTime() - start))
+                .doOnError(e -> {
+                    if (unavailable(e)) {
+                        failed(started);
+                    } else {
+                        succeeded(started, System.nanoTime() - start);
+                    }
+                })
+                .doFinally(signal -> {
+                    active.decrementAndGet();
+                    if (signal == SignalType.CANCEL) {
+                        cancelled(started);
+                    }
+                });
+    }
+
+    /**
+     * Solo los timeouts, los errores de conexion y las respuestas 5xx indican
+     * que el servicio no esta disponible. Un 4xx es una respuesta del servicio
+     * (por ejemplo, una cuenta que no existe) y cuenta como exito en la
+     * ventana.
+     */
+    static boolean unavailable(Throwable e) {
+        if (e instanceof WebClientResponseException) {
+            return ((WebClientResponseException) e).getStatusCode().is5xxServerError();
+        }
+        return e instanceof TimeoutException || e instanceof WebClientRequestException;
+    }
+
+    /**
+     * Devuelve la epoca en que empieza la llamada, o -1 si se rechaza.
+     */
+    private synchronized long acquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return -1;
+            }
+            transition(State.HALF_OPEN);
+            halfOpenStarted = 0;
+            halfOpenSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenStarted >= halfOpenCalls) {
+                return -1;
+            }
+            halfOpenStarted++;
+        }
+        return epoch;
+    }
+
+    private synchronized void succeeded(long started, long nanos) {
+        latencies[latencyIndex] = nanos;
+        latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+        if (++latencyCount % LATENCY_REFRESH == 0) {
+            long[] sorted = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_SAMPLES));
+            Arrays.sort(sorted);
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(hedgePercentile * sorted.length) - 1);
+            hedgeNanos = Math.max(hedgeMinNanos, sorted[Math.max(0, index)]);
+        }
+        if (started != epoch) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSucceeded >= halfOpenCalls) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        record(false);
+    }
+
+    private synchronized void failed(long started) {
+        if (started != epoch) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.CLOSED && record(true)) {
+            open();
+        }
+    }
+
+    /**
+     * Una llamada cancelada (la que pierde el hedge) no cuenta como resultado,
+     * pero devuelve su turno de prueba si el circuito esta semiabierto.
+     */
+    private synchronized void cancelled(long started) {
+        if (started == epoch && state == State.HALF_OPEN && halfOpenStarted > halfOpenSucceeded) {
+            halfOpenStarted--;
+        }
+    }
+
+    /**
+     * Registra el resultado en la ventana y dice si se supero la tasa de
+     * fallas.
+     */
+    private boolean record(boolean failure) {
+        if (windowCalls == window.length) {
+            windowFailures -= window[windowIndex] ? 1 : 0;
+        } else {
+            windowCalls++;
+        }
+        window[windowIndex] = failure;
+        windowFailures += failure ? 1 : 0;
+        windowIndex = (windowIndex + 1) % window.length;
+        return windowCalls >= minimumCalls && windowFailures * 100 >= failureRate * windowCalls;
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        transition(State.OPEN);
+    }
+
+    private void transition(State to) {
+        State from = state;
+        if (from == to) {
+            return;
+        }
+        state = to;
+        epoch++;
+        if (to == State.CLOSED) {
+            Arrays.fill(window, false);
+            windowIndex = 0;
+            windowCalls = 0;
+            windowFailures = 0;
+        }
+        registry.counter("account.circuit.transitions", "from", from.name(), "to", to.name()).increment();
+        logger.warn("Circuito hacia el servicio de cuentas: {} -> {}", from, to);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.banck.accountmovements.aplication.impl;
+
+import com.banck.accountmovements.domain.Account;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Consulta las cuentas al microservicio de cuentas. Las consultas simultaneas
+ * de una misma cuenta comparten una sola llamada y, con account.batch.enabled,
+ * las consultas que llegan dentro de una ventana corta se agrupan en una sola
+ * llamada a /account/batch. Todas las llamadas pasan por AccountGuard. Una
+ * cuenta que responde 404 no existe y termina vacia.
+ *
+ * @author jonavcar
+ */
+@Component
+public class AccountLoader {
+
+    Logger logger = LoggerFactory.getLogger(AccountLoader.class);
+
+    private final WebClient accountWebClient;
+    private final AccountGuard guard;
+    private final boolean batchEnabled;
+    private final Map<String, Mono<Account>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Sinks.One<Account>> waiting = new ConcurrentHashMap<>();
+    private final Sinks.Many<String> pending = Sinks.many().unicast().onBackpressureBuffer();
+
+    public AccountLoader(WebClient accountWebClient, AccountGuard guard,
+            @Value("${account.batch.enabled:false}") boolean batchEnabled,
+            @Value("${account.batch.size:50}") int batchSize,
+            @Value("${account.batch.window:10ms}") Duration batchWindow) {
+        this.accountWebClient = accountWebClient;
+        this.guard = guard;
+        this.batchEnabled = batchEnabled;
+        if (batchEnabled) {
+            pending.asFlux()
+                    .bufferTimeout(batchSize, batchWindow)
+                    .flatMap(this::fetchBatch)
+                    .subscribe();
+        }
+    }
+
+    public Mono<Account> load(String customer) {
+        return Mono.defer(() -> inFlight.computeIfAbsent(customer, key
+                -> (batchEnabled ? Mono.defer(() -> enqueue(key)) : fetch(key))
+                        .doFinally(signal -> inFlight.remove(key))
+                        .cache()));
+    }
+
+    private Mono<Account> enqueue(String customer) {
+        Sinks.One<Account> sink = Sinks.one();
+        waiting.put(customer, sink);
+        pending.emitNext(customer, (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        return sink.asMono();
+    }
+
+    private Mono<Void> fetchBatch(List<String> customers) {
+        return guard.call(() -> accountWebClient.post()
+                .uri("/account/batch")
+                .bodyValue(customers)
+                .retrieve()
+                .bodyToFlux(Account.class)
+                .collectMap(Account::getAccount))
+                .onErrorResume(e -> {
+                    logger.warn("Fallo la consulta agrupada de {} cuentas: {}", customers.size(), e.getMessage());
+                    return Mono.just(Collections.<String, Account>emptyMap());
+                })
+                .flatMapMany(found -> Flux.fromIterable(customers).flatMap(customer -> {
+                    Sinks.One<Account> sink = waiting.remove(customer);
+                    if (sink == null) {
+                        return Mono.empty();
+                    }
+                    Account account = found.get(customer);
+                    // Las cuentas que no vinieron en el lote se consultan una por una.
+                    Mono<Account> result = account != null ? Mono.just(account) : fetch(customer);
+                    return result.map(Optional::of)
+                            .defaultIfEmpty(Optional.empty())
+                            .doOnNext(o -> o.ifPresentOrElse(sink::tryEmitValue, sink::tryEmitEmpty))
+                            .onErrorResume(e -> {
+                                sink.tryEmitError(e);
+                                return Mono.empty();
+                            });
+                }))
+                .then();
+    }
+
+    private Mono<Account> fetch(String customer) {
+        return guard.call(() -> accountWebClient.get()
+                .uri("/account/" + customer)
+                .retrieve()
+                .bodyToMono(Account.class))
+                // El guard ya conto el 404 como respuesta; la cuenta no existe.
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty())
+                .doOnError(e -> logger.warn("No se pudo obtener la cuenta {}: {}", customer, e.getMessage()));
+    }
+
+}
@@ -6,54 +6,62 @@ package com.banck.accountmovements.aplication.impl;
 
 import com.banck.accountmovements.aplication.AccountOperations;
 import com.banck.accountmovements.domain.Account;
-import io.netty.channel.ChannelOption;
-import io.netty.handler.timeout.ReadTimeoutHandler;
-import io.netty.handler.timeout.WriteTimeoutHandler;
-import lombok.RequiredArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import com.banck.accountmovements.utils.MovementStages;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
-import reactor.netty.http.client.HttpClient;
-import reactor.netty.tcp.TcpClient;
 
 /**
  *
  * @author jonavcar
  */
 @Service
-@RequiredArgsConstructor
 public class AccountOperationsImpl implements AccountOperations {
 
-    Logger logger = LoggerFactory.getLogger(AccountOperationsImpl.class);
+    private final AccountLoader accountLoader;
+    private final AsyncLoadingCache<String, Account> accounts;
+    private final MeterRegistry registry;
+    private final MovementStages stages;
 
-    private final String SERVICE_ACCOUNT_PATH = "http://localhost:8081";
+    public AccountOperationsImpl(AccountLoader accountLoader, MeterRegistry registry, MovementStages stages,
+            @Value("${account.cache.maximum-size:10000}") long maximumSize,
+            @Value("${account.cache.ttl:60s}") Duration ttl,
+            @Value("${account.cache.refresh:45s}") Duration refresh) {
+        this.accountLoader = accountLoader;
+        this.registry = registry;
+        this.stages = stages;
+        // Pasado el refresh la cuenta se recarga en segundo plano y se sigue
+        // respondiendo con el valor anterior hasta que expire el ttl.
+        this.accounts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .refreshAfterWrite(refresh)
+                .recordStats()
+                .buildAsync((customer, executor) -> accountLoader.load(customer).toFuture());
+        CaffeineCacheMetrics.monitor(registry, accounts.synchronous(), "account");
+    }
 
     @Override
     public Mono<Account> get(String customer) {
-        TcpClient tcpClient = TcpClient.create()
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 3000)
-                .doOnConnected(connection
-                        -> connection.addHandlerLast(new ReadTimeoutHandler(3))
-                        .addHandlerLast(new WriteTimeoutHandler(3)));
-
-        WebClient webClient = WebClient.builder()
-                .baseUrl(SERVICE_ACCOUNT_PATH)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
-                .clientConnector(new ReactorClientHttpConnector(HttpClient.from(tcpClient))) // timeout
-                .build();
-
-        return webClient.get()
-                .uri("/account/" + customer)
-                .retrieve()
-                .bodyToMono(Account.class).flatMap(o -> {
-            return Mono.just(o);
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return stages.time("account", customer, Mono.fromFuture(accounts.get(customer)))
+                    .doOnSuccess(account -> sample.stop(timer(account != null ? "found" : "not-found")))
+                    .doOnError(e -> sample.stop(timer("error")));
         });
     }
 
+    private Timer timer(String outcome) {
+        return Timer.builder("account.requests")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
 }
@@ -0,0 +1,92 @@
+package com.banck.accountmovements.aplication.impl;
+
+import com.banck.accountmovements.aplication.BalanceOperations;
+import com.banck.accountmovements.aplication.MovementLane;
+import com.banck.accountmovements.aplication.model.BalanceRepository;
+import com.banck.accountmovements.aplication.model.MovementRepository;
+import com.banck.accountmovements.aplication.model.RollupRepository;
+import com.banck.accountmovements.domain.Balance;
+import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.domain.MovementQuery;
+import com.banck.accountmovements.domain.Statement;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collections;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ *
+ * @author jonavcar
+ */
+@Service
+@RequiredArgsConstructor
+public class BalanceOperationsImpl implements BalanceOperations {
+
+    private final BalanceRepository balanceRepository;
+    private final MovementRepository movementRepository;
+    private final RollupRepository rollupRepository;
+    private final MeterRegistry registry;
+    private final MovementLane movementLane;
+
+    @Override
+    public Mono<Balance> get(String account) {
+        return balanceRepository.get(account);
+    }
+
+    @Override
+    public Mono<Long> available(String account) {
+        // Las cuentas que aun no tienen saldo registrado (previas a la
+        // reconstruccion) se suman en la base de datos una sola vez: el total
+        // queda como su documento de saldo antes del primer incremento.
+        return balanceRepository.get(account)
+                .map(Balance::getAmountMinor)
+                .doOnNext(balance -> registry.summary("movement.balance.scanned").record(0))
+                .switchIfEmpty(Mono.defer(() -> movementRepository.balanceByAccount(account)
+                .flatMap(total -> balanceRepository.seed(account, total)
+                .switchIfEmpty(Mono.defer(() -> balanceRepository.get(account))))
+                .map(Balance::getAmountMinor)));
+    }
+
+    /**
+     * Recalcula cada cuenta dentro de su carril, para no cruzarse con los
+     * movimientos que esta instancia registra mientras tanto, y elimina los
+     * saldos de cuentas que ya no tienen movimientos.
+     */
+    @Override
+    public Flux<Balance> rebuild() {
+        return balanceRepository.accounts()
+                .concatMap(account -> movementLane.execute(account, () -> balanceRepository.rebuild(account)))
+                .concatWith(balanceRepository.removeOrphans().then(Mono.empty()));
+    }
+
+    @Override
+    public Mono<Statement> statement(String account, long fromTimestamp, long toTimestamp) {
+        MovementQuery range = new MovementQuery();
+        range.setFromTimestamp(fromTimestamp);
+        range.setToTimestamp(toTimestamp);
+        return rollupRepository.closingBefore(account, fromTimestamp).flatMap(opening -> movementRepository.listByAccount(account, range)
+                .collectList()
+                .map(movements -> {
+                    Collections.reverse(movements);
+                    Statement s = new Statement();
+                    s.setAccount(account);
+                    s.setOpeningMinor(opening);
+                    s.setClosingMinor(opening + movements.stream().mapToLong(Movement::getAmountMinor).sum());
+                    s.setMovements(movements);
+                    return s;
+                }));
+    }
+
+    /**
+     * Igual que el saldo, cada cuenta se recalcula dentro de su carril.
+     */
+    @Override
+    public Mono<Long> rebuildRollups() {
+        return balanceRepository.accounts()
+                .concatMap(account -> movementLane.execute(account, () -> rollupRepository.rebuild(account)))
+                .reduce(0L, Long::sum);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.banck.accountmovements.aplication.impl;
+
+import com.banck.accountmovements.aplication.IdempotencyOperations;
+import com.banck.accountmovements.aplication.model.IdempotencyRepository;
+import com.banck.accountmovements.domain.StoredResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Antes de ejecutar la operacion se reserva la clave en la coleccion
+ * idempotency junto con el hash de la solicitud; la respuesta se guarda sobre
+ * la reserva y se conserva 24 horas. Un reintento mientras la reserva sigue
+ * abierta, en esta u otra instancia, espera la respuesta hasta
+ * movement.idempotency.wait y despues recibe un conflicto. Si la operacion
+ * falla la reserva se libera. Las respuestas recientes se responden desde
+ * memoria.
+ *
+ * @author jonavcar
+ */
+@Service
+public class IdempotencyOperationsImpl implements IdempotencyOperations {
+
+    static final Duration POLL = Duration.ofMillis(50);
+
+    private final IdempotencyRepository idempotencyRepository;
+    private final Cache<String, StoredResponse> recent;
+    private final Map<String, Mono<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final int polls;
+
+    public IdempotencyOperationsImpl(IdempotencyRepository idempotencyRepository, MeterRegistry registry,
+            @Value("${movement.idempotency.cache.maximum-size:10000}") long maximumSize,
+            @Value("${movement.idempotency.cache.ttl:10m}") Duration ttl,
+            @Value("${movement.idempotency.wait:5s}") Duration wait) {
+        this.idempotencyRepository = idempotencyRepository;
+        this.polls = (int) Math.max(1, wait.toMillis() / POLL.toMillis());
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, recent, "idempotency");
+    }
+
+    @Override
+    public Mono<StoredResponse> execute(String key, String requestHash, Supplier<Mono<StoredResponse>> operation) {
+        return Mono.defer(() -> {
+            StoredResponse cached = recent.getIfPresent(key);
+            Mono<StoredResponse> response = cached != null ? Mono.just(cached)
+                    : inFlight.computeIfAbsent(key, k -> idempotencyRepository.reserve(k, requestHash)
+                            .flatMap(reserved -> reserved ? run(k, requestHash, operation) : stored(k, requestHash))
+                            .doOnNext(stored -> {
+                                if (stored.isCompleted()) {
+                                    recent.put(k, stored);
+                                }
+                            })
+                            .doFinally(signal -> inFlight.remove(k))
+                            .cache());
+            return response.flatMap(stored -> sameRequest(stored, requestHash));
+        });
+    }
+
+    private Mono<StoredResponse> run(String key, String requestHash, Supplier<Mono<StoredResponse>> operation) {
+        return Mono.defer(operation)
+                .flatMap(response -> {
+                    response.setKey(key);
+                    response.setRequestHash(requestHash);
+                    response.setCompleted(true);
+                    return idempotencyRepository.complete(response);
+                })
+                .onErrorResume(e -> idempotencyRepository.release(key).then(Mono.error(e)));
+    }
+
+    /**
+     * Respuesta de una clave reservada por otra ejecucion; si la reserva no
+     * se completa a tiempo, o se libero porque fallo, es un conflicto. Una
+     * reserva de otra solicitud no se espera.
+     */
+    private Mono<StoredResponse> stored(String key, String requestHash) {
+        return Mono.defer(() -> idempotencyRepository.get(key))
+                .filter(stored -> stored.isCompleted() || !matches(stored, requestHash))
+                .repeatWhenEmpty(polls, repeat -> repeat.delayElements(POLL))
+                .switchIfEmpty(Mono.error(() -> new ConflictException(
+                "La solicitud con la clave " + key + " aun esta en proceso, intente nuevamente")));
+    }
+
+    private Mono<StoredResponse> sameRequest(StoredResponse stored, String requestHash) {
+        if (matches(stored, requestHash)) {
+            return Mono.just(stored);
+        }
+        return Mono.error(new ConflictException("La clave " + stored.getKey() + " ya se uso con otra solicitud"));
+    }
+
+    /**
+     * Las respuestas guardadas antes de registrar el hash se aceptan.
+     */
+    private boolean matches(StoredResponse stored, String requestHash) {
+        return stored.getRequestHash() == null || Objects.equals(stored.getRequestHash(), requestHash);
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.banck.accountmovements.aplication.impl;
+
+import com.banck.accountmovements.aplication.AccountOperations;
+import com.banck.accountmovements.aplication.LimitOperations;
+import com.banck.accountmovements.aplication.model.RollupRepository;
+import com.banck.accountmovements.domain.Account;
+import com.banck.accountmovements.domain.AccountLimit;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Aplica los limites de la cuenta: topMMovem movimientos por mes y, en las
+ * cuentas con dayMovem, un solo movimiento ese dia del mes. La cantidad del
+ * mes se lee del cierre mensual de la cuenta, un solo documento que se
+ * incrementa junto con cada movimiento. La cuenta se consulta con limit,
+ * fuera del carril, para no retenerlo durante la llamada remota. La lectura
+ * del mes con check y el registro posterior no son atomicos: quien llama
+ * debe hacerlos dentro del carril de la cuenta, que los ordena solo dentro
+ * de esta instancia. Con varias instancias, dos movimientos simultaneos de la
+ * misma cuenta pueden superar el tope en uno.
+ *
+ * @author jonavcar
+ */
+@Service
+public class LimitOperationsImpl implements LimitOperations {
+
+    static final ZoneId ZONE = ZoneId.of("America/Bogota");
+    static final Optional<String> ALLOWED = Optional.empty();
+    static final Optional<String> INACTIVE = Optional.of("La cuenta se encuentra inactiva.");
+    static final Optional<String> NOT_FOUND = Optional.of("La cuenta no existe.");
+    static final Optional<String> UNAVAILABLE = Optional.of("No se pudo verificar la cuenta, intente nuevamente.");
+
+    private final AccountOperations accountOperations;
+    private final RollupRepository rollupRepository;
+    private final boolean enabled;
+
+    public LimitOperationsImpl(AccountOperations accountOperations, RollupRepository rollupRepository,
+            @Value("${movement.limits.enabled:true}") boolean enabled) {
+        this.accountOperations = accountOperations;
+        this.rollupRepository = rollupRepository;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public Mono<AccountLimit> limit(String account, long timestamp) {
+        if (!enabled) {
+            return Mono.just(AccountLimit.allowed(account, timestamp, 0));
+        }
+        return accountOperations.get(account)
+                .map(a -> limit(a, account, timestamp))
+                .defaultIfEmpty(AccountLimit.rejected(account, timestamp, NOT_FOUND.get()))
+                .onErrorReturn(AccountLimit.rejected(account, timestamp, UNAVAILABLE.get()));
+    }
+
+    private AccountLimit limit(Account a, String account, long timestamp) {
+        if (!a.isStatus()) {
+            return AccountLimit.rejected(account, timestamp, INACTIVE.get());
+        }
+        int limit = a.getTopMMovem();
+        if (a.getDayMovem() > 0) {
+            if (Instant.ofEpochMilli(timestamp).atZone(ZONE).getDayOfMonth() != a.getDayMovem()) {
+                return AccountLimit.rejected(account, timestamp, "La cuenta solo admite movimientos el dia " + a.getDayMovem() + " de cada mes.");
+            }
+            limit = 1;
+        }
+        return AccountLimit.allowed(account, timestamp, Math.max(limit, 0));
+    }
+
+    @Override
+    public Mono<Optional<String>> check(AccountLimit limit, int movements) {
+        if (limit.getRejection() != null) {
+            return Mono.just(Optional.of(limit.getRejection()));
+        }
+        if (limit.getMax() <= 0) {
+            return Mono.just(ALLOWED);
+        }
+        int max = limit.getMax();
+        return rollupRepository.countInMonth(limit.getAccount(), limit.getTimestamp())
+                .map(count -> count + movements > max
+                ? Optional.of("La cuenta alcanzo el maximo de " + max + " movimientos del mes.")
+                : ALLOWED);
+    }
+
+}
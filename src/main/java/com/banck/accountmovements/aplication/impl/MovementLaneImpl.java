@@ -0,0 +1,129 @@
+package com.banck.accountmovements.aplication.impl;
+
+import com.banck.accountmovements.aplication.MovementLane;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reparte las cuentas en un numero fijo de carriles. Cada carril ejecuta una
+ * operacion a la vez sin bloquear hilos: la siguiente se lanza cuando la
+ * anterior termina, falla, se cancela o supera movement.lane.timeout. Las
+ * operaciones de dos cuentas toman ambos carriles en orden de indice para
+ * que dos transferencias cruzadas no se esperen entre si.
+ *
+ * @author jonavcar
+ */
+@Service
+public class MovementLaneImpl implements MovementLane {
+
+    private final Stripe[] stripes;
+    private final Duration timeout;
+
+    public MovementLaneImpl(MeterRegistry registry, @Value("${movement.lane.stripes:64}") int size,
+            @Value("${movement.lane.timeout:5s}") Duration timeout) {
+        this.timeout = timeout;
+        stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            Stripe stripe = new Stripe();
+            String tag = String.valueOf(i);
+            Gauge.builder("movement.lane.queue.depth", stripe.depth, AtomicInteger::get)
+                    .tag("stripe", tag)
+                    .register(registry);
+            stripe.wait = Timer.builder("movement.lane.wait")
+                    .tag("stripe", tag)
+                    .register(registry);
+            stripes[i] = stripe;
+        }
+    }
+
+    @Override
+    public <T> Mono<T> execute(String account, Supplier<Mono<T>> operation) {
+        return run(stripes[indexOf(account)], () -> Mono.defer(operation).timeout(timeout));
+    }
+
+    @Override
+    public <T> Mono<T> execute(String account, String other, Supplier<Mono<T>> operation) {
+        int a = indexOf(account);
+        int b = indexOf(other);
+        if (a == b) {
+            return execute(account, operation);
+        }
+        Stripe first = stripes[Math.min(a, b)];
+        Stripe second = stripes[Math.max(a, b)];
+        return run(first, () -> run(second, () -> Mono.defer(operation).timeout(timeout)));
+    }
+
+    private int indexOf(String account) {
+        return account == null ? 0 : Math.floorMod(account.hashCode(), stripes.length);
+    }
+
+    private <T> Mono<T> run(Stripe stripe, Supplier<Mono<T>> operation) {
+        return Mono.create(sink -> {
+            // Al cancelar se descarta la operacion en cola o se corta la que
+            // esta en curso; en ambos casos el carril queda libre.
+            Disposable.Swap running = Disposables.swap();
+            sink.onCancel(running);
+            long queued = System.nanoTime();
+            stripe.offer(() -> {
+                if (running.isDisposed()) {
+                    stripe.complete();
+                    return;
+                }
+                stripe.wait.record(System.nanoTime() - queued, TimeUnit.NANOSECONDS);
+                running.update(Mono.defer(operation)
+                        .doFinally(signal -> stripe.complete())
+                        .contextWrite(sink.contextView())
+                        .subscribe(sink::success, sink::error, sink::success));
+            });
+        });
+    }
+
+    static class Stripe {
+
+        final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger depth = new AtomicInteger();
+        final AtomicInteger wip = new AtomicInteger();
+        volatile boolean active;
+        Timer wait;
+
+        void offer(Runnable operation) {
+            depth.incrementAndGet();
+            queue.offer(operation);
+            drain();
+        }
+
+        void complete() {
+            active = false;
+            drain();
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                if (!active) {
+                    Runnable next = queue.poll();
+                    if (next != null) {
+                        depth.decrementAndGet();
+                        active = true;
+                        next.run();
+                    }
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+    }
+
+}
@@ -1,28 +1,212 @@
 package com.banck.accountmovements.aplication.impl;
 
 import com.banck.accountmovements.domain.Movement;
-import lombok.RequiredArgsConstructor;
+import com.banck.accountmovements.domain.MovementQuery;
+import com.banck.accountmovements.domain.MovementSummary;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 import com.banck.accountmovements.aplication.MovementOperations;
 import com.banck.accountmovements.aplication.model.MovementRepository;
 
 /**
+ * Los movimientos mas recientes de cada cuenta y cliente se guardan en
+ * memoria y se descartan cuando el change stream de la coleccion movement
+ * informa un cambio, venga de esta instancia o de otra, o al vencer
+ * movement.recent-cache.ttl. El change stream se abre cuando la aplicacion
+ * esta lista y solo si Mongo lo admite; hasta que entrega su primer evento, y
+ * cada vez que se cae, todas las lecturas van a Mongo.
  *
  * @author jonavcar
  */
 @Service
-@RequiredArgsConstructor
 public class MovementOperationsImpl implements MovementOperations {
 
+    static final int GENERATION_STRIPES = 1024;
+
+    Logger logger = LoggerFactory.getLogger(MovementOperationsImpl.class);
+
     private final MovementRepository movementRepository;
+    private final int depth;
+    private final AsyncCache<String, List<Movement>> recent;
+    private final Timer invalidationLag;
+    // Cada invalidacion incrementa la generacion de su clave (o la de todas);
+    // una carga que termina con otra generacion no queda en la cache.
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong cleared = new AtomicLong();
+    private volatile boolean watching;
+
+    public MovementOperationsImpl(MovementRepository movementRepository, MeterRegistry registry,
+            @Value("${movement.recent-cache.enabled:true}") boolean enabled,
+            @Value("${movement.recent-cache.depth:100}") int depth,
+            @Value("${movement.recent-cache.maximum-movements:100000}") long maximumMovements,
+            @Value("${movement.recent-cache.ttl:5m}") Duration ttl) {
+        this.movementRepository = movementRepository;
+        this.depth = depth;
+        this.invalidationLag = Timer.builder("movement.recent-cache.invalidation.lag")
+                .publishPercentileHistogram()
+                .register(registry);
+        if (!enabled) {
+            this.recent = null;
+            return;
+        }
+        this.recent = Caffeine.newBuilder()
+                .maximumWeight(maximumMovements)
+                .weigher((String key, List<Movement> movements) -> movements.size() + 1)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(registry, recent.synchronous(), "movement.recent");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void watch() {
+        if (recent == null) {
+            return;
+        }
+        movementRepository.changeStreamsSupported().subscribe(supported -> {
+            if (!supported) {
+                logger.warn("Mongo no admite change streams; la cache de movimientos recientes queda desactivada");
+                return;
+            }
+            movementRepository.changes()
+                    .doOnNext(movement -> {
+                        changed(movement);
+                        watching = true;
+                    })
+                    .doOnError(e -> {
+                        watching = false;
+                        invalidateAll();
+                        logger.warn("Se perdio el change stream de movimientos: {}", e.getMessage());
+                    })
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                    .subscribe();
+        });
+    }
+
+    private boolean cached() {
+        return recent != null && watching;
+    }
+
+    /**
+     * Los depth movimientos mas recientes del dueno, del mas nuevo al mas
+     * antiguo. La lista es compartida entre lecturas y no se modifica.
+     */
+    private Mono<List<Movement>> recent(String key, Function<MovementQuery, Flux<Movement>> loader) {
+        return Mono.defer(() -> {
+            long generation = generation(key);
+            CompletableFuture<List<Movement>> future = recent.get(key, (k, executor) -> {
+                MovementQuery query = new MovementQuery();
+                query.setSize(depth);
+                return loader.apply(query).collectList().map(Collections::unmodifiableList).toFuture();
+            });
+            return Mono.fromFuture(future).doOnNext(movements -> {
+                if (generation(key) != generation) {
+                    // Se invalido mientras se cargaba: se responde, pero no se conserva.
+                    recent.asMap().remove(key, future);
+                }
+            });
+        });
+    }
+
+    private long generation(String key) {
+        return generations.get(Math.floorMod(key.hashCode(), GENERATION_STRIPES)) + cleared.get();
+    }
+
+    private void invalidate(String key) {
+        generations.incrementAndGet(Math.floorMod(key.hashCode(), GENERATION_STRIPES));
+        recent.synchronous().invalidate(key);
+    }
+
+    private void invalidateAll() {
+        cleared.incrementAndGet();
+        recent.synchronous().invalidateAll();
+    }
+
+    /**
+     * Historial completo: si cabe en la cache se devuelve desde memoria en
+     * orden cronologico, si no se lee de Mongo.
+     */
+    private Flux<Movement> history(String key, Function<MovementQuery, Flux<Movement>> loader, Flux<Movement> all) {
+        if (!cached()) {
+            return all;
+        }
+        return recent(key, loader).flatMapMany(movements -> {
+            if (movements.size() >= depth) {
+                return all;
+            }
+            List<Movement> chronological = new ArrayList<>(movements);
+            Collections.reverse(chronological);
+            return Flux.fromIterable(chronological);
+        });
+    }
+
+    /**
+     * Primera pagina sin rango ni campos: se recorta de la cache.
+     */
+    private Flux<Movement> page(String key, Function<MovementQuery, Flux<Movement>> loader, MovementQuery query) {
+        boolean firstPage = query.getFromTimestamp() == null && query.getToTimestamp() == null
+                && query.getAfterTimestamp() == null && query.getFields() == null
+                && query.getSize() > 0 && query.getSize() <= depth;
+        if (!cached() || !firstPage) {
+            return loader.apply(query);
+        }
+        return recent(key, loader)
+                .flatMapMany(movements -> Flux.fromIterable(movements.subList(0, Math.min(query.getSize(), movements.size()))));
+    }
+
+    private void changed(Movement movement) {
+        evict(movement);
+        if (movement.getTimestamp() > 0) {
+            invalidationLag.record(Math.max(0, System.currentTimeMillis() - movement.getTimestamp()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void evict(Movement movement) {
+        if (recent == null) {
+            return;
+        }
+        if (movement.getAccount() == null) {
+            // En una eliminacion no se conoce la cuenta.
+            invalidateAll();
+            return;
+        }
+        invalidate("account:" + movement.getAccount());
+        if (movement.getCustomer() != null) {
+            invalidate("customer:" + movement.getCustomer());
+        }
+    }
 
     @Override
     public Flux<Movement> list() {
         return movementRepository.list();
     }
 
+    @Override
+    public Flux<Movement> list(MovementQuery query) {
+        return movementRepository.list(query);
+    }
+
     @Override
     public Mono<Movement> get(String movement) {
         return movementRepository.get(movement);
@@ -30,22 +214,49 @@ public class MovementOperationsImpl implements MovementOperations {
 
     @Override
     public Mono<Movement> create(Movement movement) {
-        return movementRepository.create(movement);
+        return movementRepository.create(movement).doOnNext(this::evict);
+    }
+
+    @Override
+    public Flux<Movement> createAll(List<Movement> movements) {
+        return movementRepository.createAll(movements).doOnNext(this::evict);
+    }
+
+    @Override
+    public Mono<Movement> transfer(Movement charge, Movement payment) {
+        return movementRepository.transfer(charge, payment).doOnNext(movement -> {
+            evict(movement);
+            evict(payment);
+        });
     }
 
     @Override
     public Mono<Movement> update(String movement, Movement c) {
-        return movementRepository.update(movement, c);
+        return movementRepository.update(movement, c).doOnNext(this::evict);
     }
 
     @Override
     public void delete(String movement) {
         movementRepository.delete(movement);
+        if (recent != null) {
+            invalidateAll();
+        }
     }
 
     @Override
     public Flux<Movement> listByCustomer(String customer) {
-        return movementRepository.listByCustomer(customer);
+        return history("customer:" + customer, query -> movementRepository.listByCustomer(customer, query),
+                movementRepository.listByCustomer(customer));
+    }
+
+    @Override
+    public Flux<Movement> listByCustomer(String customer, MovementQuery query) {
+        return page("customer:" + customer, q -> movementRepository.listByCustomer(customer, q), query);
+    }
+
+    @Override
+    public Flux<Movement> listByAccount(String account, MovementQuery query) {
+        return page("account:" + account, q -> movementRepository.listByAccount(account, q), query);
     }
 
     @Override
@@ -53,14 +264,25 @@ public class MovementOperationsImpl implements MovementOperations {
         return movementRepository.listByCustomerAndAccount(customer, account);
     }
 
+    @Override
+    public Flux<Movement> listByCustomerAndAccount(String customer, String account, MovementQuery query) {
+        return movementRepository.listByCustomerAndAccount(customer, account, query);
+    }
+
     @Override
     public Flux<Movement> listByCustomerAndAccountAndAccountType(String customer, String account, String accountType) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
     @Override
-    public Flux<Movement> listByAccount(String movement) {
-        return movementRepository.listByAccount(movement);
+    public Flux<MovementSummary> summaryByAccount(String account) {
+        return movementRepository.summaryByAccount(account);
+    }
+
+    @Override
+    public Flux<Movement> listByAccount(String account) {
+        return history("account:" + account, query -> movementRepository.listByAccount(account, query),
+                movementRepository.listByAccount(account));
     }
 
 }
@@ -0,0 +1,46 @@
+package com.banck.accountmovements.aplication.model;
+
+import com.banck.accountmovements.domain.Balance;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ *
+ * @author jonavcar
+ */
+public interface BalanceRepository {
+
+    public Mono<Balance> get(String account);
+
+    /**
+     * Suma atomicamente el monto, en centimos, al saldo de la cuenta y
+     * devuelve el saldo resultante. Si la cuenta aun no tiene documento de
+     * saldo no hace nada y termina vacio; primero hay que crearlo con seed.
+     */
+    public Mono<Balance> add(String account, long amountMinor);
+
+    /**
+     * Crea el documento de saldo con el total indicado solo si no existe.
+     * Devuelve el saldo creado, o vacio si otra escritura lo creo antes.
+     */
+    public Mono<Balance> seed(String account, long amountMinor);
+
+    /**
+     * Cuentas que tienen movimientos, en la coleccion principal o en el
+     * archivo.
+     */
+    public Flux<String> accounts();
+
+    /**
+     * Recalcula el saldo de la cuenta a partir de sus movimientos. Solo
+     * escribe si el saldo no cambio mientras se calculaba; si cambio, vuelve
+     * a calcularlo.
+     */
+    public Mono<Balance> rebuild(String account);
+
+    /**
+     * Elimina los saldos de cuentas sin movimientos y devuelve cuantos
+     * elimino.
+     */
+    public Mono<Long> removeOrphans();
+}
@@ -0,0 +1,30 @@
+package com.banck.accountmovements.aplication.model;
+
+import com.banck.accountmovements.domain.StoredResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ *
+ * @author jonavcar
+ */
+public interface IdempotencyRepository {
+
+    public Mono<StoredResponse> get(String key);
+
+    /**
+     * Reserva la clave para la solicitud; false si ya estaba reservada o
+     * completada.
+     */
+    public Mono<Boolean> reserve(String key, String requestHash);
+
+    /**
+     * Guarda la respuesta sobre la reserva y la marca como completada.
+     */
+    public Mono<StoredResponse> complete(StoredResponse response);
+
+    /**
+     * Libera una reserva que no llego a completarse, para que la clave pueda
+     * reintentarse.
+     */
+    public Mono<Void> release(String key);
+}
@@ -1,6 +1,9 @@
 package com.banck.accountmovements.aplication.model;
 
 import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.domain.MovementQuery;
+import com.banck.accountmovements.domain.MovementSummary;
+import java.util.List;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -12,18 +15,56 @@ public interface MovementRepository {
 
     public Flux<Movement> list();
 
+    public Flux<Movement> list(MovementQuery query);
+
     public Flux<Movement> listByCustomer(String customer);
     
     public Flux<Movement> listByAccount(String account);
 
+    public Flux<Movement> listByCustomer(String customer, MovementQuery query);
+
+    public Flux<Movement> listByAccount(String account, MovementQuery query);
+
     public Flux<Movement> listByCustomerAndAccount(String customer, String account);
 
+    public Flux<Movement> listByCustomerAndAccount(String customer, String account, MovementQuery query);
+
     public Flux<Movement> listByCustomerAndAccountAndAccountType(String customer, String account, String accountType);
 
+    /**
+     * Saldo de la cuenta en centimos, calculado en la base de datos.
+     */
+    public Mono<Long> balanceByAccount(String account);
+
+    /**
+     * Totales de la cuenta por concepto y tipo de movimiento.
+     */
+    public Flux<MovementSummary> summaryByAccount(String account);
+
+    /**
+     * Movimientos creados, modificados o eliminados por cualquier instancia.
+     * En las eliminaciones solo viene el codigo del movimiento; timestamp es
+     * el momento del cambio.
+     */
+    public Flux<Movement> changes();
+
+    /**
+     * Si la base admite change streams (replica set o cluster).
+     */
+    public Mono<Boolean> changeStreamsSupported();
+
     public Mono<Movement> get(String movement);
 
     public Mono<Movement> create(Movement movement);
 
+    public Flux<Movement> createAll(List<Movement> movements);
+
+    /**
+     * Registra el cargo y el abono de una transferencia en una sola operacion y
+     * devuelve el cargo.
+     */
+    public Mono<Movement> transfer(Movement charge, Movement payment);
+
     public Mono<Movement> update(String id, Movement movement);
 
     public void delete(String id);
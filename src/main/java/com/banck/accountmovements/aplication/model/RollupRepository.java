@@ -0,0 +1,31 @@
+package com.banck.accountmovements.aplication.model;
+
+import reactor.core.publisher.Mono;
+
+/**
+ *
+ * @author jonavcar
+ */
+public interface RollupRepository {
+
+    /**
+     * Acumula los movimientos en los cierres del dia y del mes del timestamp.
+     */
+    public Mono<Void> record(String account, long timestamp, long netMinor, long count);
+
+    /**
+     * Saldo al cierre del dia anterior al del timestamp.
+     */
+    public Mono<Long> closingBefore(String account, long timestamp);
+
+    /**
+     * Movimientos registrados en el mes del timestamp.
+     */
+    public Mono<Long> countInMonth(String account, long timestamp);
+
+    /**
+     * Recalcula los cierres de la cuenta a partir de sus movimientos y
+     * devuelve la cantidad de cierres escritos.
+     */
+    public Mono<Long> rebuild(String account);
+}
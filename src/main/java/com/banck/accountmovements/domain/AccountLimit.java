@@ -0,0 +1,32 @@
+package com.banck.accountmovements.domain;
+
+import lombok.Data;
+
+/**
+ * Limite de una cuenta ya consultada: el rechazo, si la cuenta no admite
+ * movimientos, o el maximo de movimientos del mes (0 sin tope).
+ *
+ * @author jonavcar
+ */
+@Data
+public class AccountLimit {
+
+    public String account;
+    public long timestamp;
+    public String rejection;
+    public int max;
+
+    public static AccountLimit allowed(String account, long timestamp, int max) {
+        AccountLimit l = new AccountLimit();
+        l.setAccount(account);
+        l.setTimestamp(timestamp);
+        l.setMax(max);
+        return l;
+    }
+
+    public static AccountLimit rejected(String account, long timestamp, String rejection) {
+        AccountLimit l = allowed(account, timestamp, 0);
+        l.setRejection(rejection);
+        return l;
+    }
+}
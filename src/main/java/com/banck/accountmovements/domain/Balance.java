@@ -0,0 +1,23 @@
+package com.banck.accountmovements.domain;
+
+import com.banck.accountmovements.utils.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ *
+ * @author jonavcar
+ */
+@Data
+public class Balance {
+
+    public String account;
+    @JsonIgnore
+    public long amountMinor;
+
+    @JsonProperty("amount")
+    public double getAmount() {
+        return Money.toMajor(amountMinor);
+    }
+}
@@ -1,5 +1,8 @@
 package com.banck.accountmovements.domain;
 
+import com.banck.accountmovements.utils.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
 /**
@@ -15,10 +18,22 @@ public class Movement {
     public String customer;
     public String transferAccount;
     public String transferCustomer;
-    public double amount;
+    @JsonIgnore
+    public long amountMinor;
     public String concept;
     public String observations;
     public String date;
     public String time;
+    public long timestamp;
     public boolean correct;
+
+    @JsonProperty("amount")
+    public double getAmount() {
+        return Money.toMajor(amountMinor);
+    }
+
+    @JsonProperty("amount")
+    public void setAmount(double amount) {
+        this.amountMinor = Money.toMinor(amount);
+    }
 }
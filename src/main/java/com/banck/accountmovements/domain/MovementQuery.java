@@ -0,0 +1,23 @@
+package com.banck.accountmovements.domain;
+
+import java.util.Set;
+import lombok.Data;
+
+/**
+ * Filtro de rango y posicion de una pagina de movimientos. Las paginas se
+ * ordenan del mas reciente al mas antiguo y continuan despues del movimiento
+ * indicado por afterTimestamp y afterMovement. Con fields solo se leen y
+ * devuelven esos campos.
+ *
+ * @author jonavcar
+ */
+@Data
+public class MovementQuery {
+
+    public Long fromTimestamp;
+    public Long toTimestamp;
+    public Long afterTimestamp;
+    public String afterMovement;
+    public int size;
+    public Set<String> fields;
+}
@@ -0,0 +1,30 @@
+package com.banck.accountmovements.domain;
+
+import lombok.Data;
+
+/**
+ *
+ * @author jonavcar
+ */
+@Data
+public class MovementResult {
+
+    public Movement movement;
+    public boolean accepted;
+    public String message;
+
+    public static MovementResult accepted(Movement movement) {
+        MovementResult r = new MovementResult();
+        r.setMovement(movement);
+        r.setAccepted(true);
+        return r;
+    }
+
+    public static MovementResult rejected(Movement movement, String message) {
+        MovementResult r = new MovementResult();
+        r.setMovement(movement);
+        r.setAccepted(false);
+        r.setMessage(message);
+        return r;
+    }
+}
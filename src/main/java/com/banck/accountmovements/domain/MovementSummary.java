@@ -0,0 +1,26 @@
+package com.banck.accountmovements.domain;
+
+import com.banck.accountmovements.utils.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ *
+ * @author jonavcar
+ */
+@Data
+public class MovementSummary {
+
+    public String account;
+    public String concept;
+    public String movementType;
+    public long count;
+    @JsonIgnore
+    public long amountMinor;
+
+    @JsonProperty("amount")
+    public double getAmount() {
+        return Money.toMajor(amountMinor);
+    }
+}
@@ -0,0 +1,34 @@
+package com.banck.accountmovements.domain;
+
+import com.banck.accountmovements.utils.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import lombok.Data;
+
+/**
+ *
+ * @author jonavcar
+ */
+@Data
+public class Statement {
+
+    public String account;
+    public String from;
+    public String to;
+    @JsonIgnore
+    public long openingMinor;
+    @JsonIgnore
+    public long closingMinor;
+    public List<Movement> movements;
+
+    @JsonProperty("openingBalance")
+    public double getOpeningBalance() {
+        return Money.toMajor(openingMinor);
+    }
+
+    @JsonProperty("closingBalance")
+    public double getClosingBalance() {
+        return Money.toMajor(closingMinor);
+    }
+}
@@ -0,0 +1,20 @@
+package com.banck.accountmovements.domain;
+
+import lombok.Data;
+
+/**
+ * Respuesta original de una operacion con Idempotency-Key: el movimiento
+ * registrado o el mensaje devuelto. Mientras la operacion se ejecuta la clave
+ * queda reservada sin completar.
+ *
+ * @author jonavcar
+ */
+@Data
+public class StoredResponse {
+
+    public String key;
+    public String requestHash;
+    public boolean completed;
+    public Movement movement;
+    public String message;
+}
@@ -1,6 +1,8 @@
 package com.banck.accountmovements.infraestructure.mockRepository;
 
 import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.domain.MovementQuery;
+import com.banck.accountmovements.domain.MovementSummary;
 import java.util.ArrayList;
 import java.util.List;
 import org.springframework.stereotype.Component;
@@ -33,11 +35,36 @@ public class MockMovementRepository implements MovementRepository {
         return Flux.fromIterable(lc);
     }
 
+    @Override
+    public Flux<Movement> list(MovementQuery query) {
+        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+
+    @Override
+    public Flux<Movement> changes() {
+        return Flux.never();
+    }
+
+    @Override
+    public Mono<Boolean> changeStreamsSupported() {
+        return Mono.just(false);
+    }
+
     @Override
     public Mono<Movement> create(Movement c) {
         return Mono.just(c);
     }
 
+    @Override
+    public Flux<Movement> createAll(List<Movement> movements) {
+        return Flux.fromIterable(movements);
+    }
+
+    @Override
+    public Mono<Movement> transfer(Movement charge, Movement payment) {
+        return Mono.just(charge);
+    }
+
     @Override
     public Mono<Movement> update(String credito, Movement c) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -53,16 +80,41 @@ public class MockMovementRepository implements MovementRepository {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
+    @Override
+    public Flux<Movement> listByCustomer(String customer, MovementQuery query) {
+        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+
+    @Override
+    public Flux<Movement> listByAccount(String account, MovementQuery query) {
+        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+
     @Override
     public Flux<Movement> listByCustomerAndAccount(String customer, String account) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
+    @Override
+    public Flux<Movement> listByCustomerAndAccount(String customer, String account, MovementQuery query) {
+        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+
     @Override
     public Flux<Movement> listByCustomerAndAccountAndAccountType(String customer, String account, String accountType) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
+    @Override
+    public Mono<Long> balanceByAccount(String account) {
+        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+
+    @Override
+    public Flux<MovementSummary> summaryByAccount(String account) {
+        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+
     @Override
     public Flux<Movement> listByAccount(String account) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -0,0 +1,23 @@
+package com.banck.accountmovements.infraestructure.model.dao;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ *
+ * @author jonavcar
+ */
+@Data
+@Document("balance")
+public class BalanceDao {
+
+    @Id
+    public String account;
+    public long amountMinor;
+    /**
+     * Aumenta con cada cambio del saldo; la reconstruccion solo escribe si no
+     * cambio mientras recalculaba. Falta en los saldos anteriores a este campo.
+     */
+    public long version;
+}
@@ -0,0 +1,27 @@
+package com.banck.accountmovements.infraestructure.model.dao;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Cierre diario (period D, day yyyyMMdd) o mensual (period M, day yyyyMM) de
+ * una cuenta: monto neto y cantidad de movimientos del periodo. El saldo al
+ * cierre no se guarda; se obtiene sumando los periodos anteriores.
+ *
+ * @author jonavcar
+ */
+@Data
+@Document("balance_rollup")
+@CompoundIndex(name = "account_period_day_idx", def = "{'account': 1, 'period': 1, 'day': -1}")
+public class BalanceRollupDao {
+
+    @Id
+    public String id;
+    public String account;
+    public String period;
+    public int day;
+    public long netMinor;
+    public long count;
+}
@@ -0,0 +1,33 @@
+package com.banck.accountmovements.infraestructure.model.dao;
+
+import com.banck.accountmovements.domain.Movement;
+import java.util.Date;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ *
+ * @author jonavcar
+ */
+@Data
+@Document("idempotency")
+public class IdempotencyDao {
+
+    @Id
+    public String key;
+    /**
+     * SHA-256 de la solicitud que reservo la clave.
+     */
+    public String requestHash;
+    /**
+     * Falso mientras la operacion se ejecuta. Los documentos anteriores a la
+     * reserva no lo tienen y siempre fueron respuestas completas.
+     */
+    public Boolean completed;
+    public Movement movement;
+    public String message;
+    @Indexed(name = "created_ttl_idx", expireAfterSeconds = 86400)
+    public Date createdAt;
+}
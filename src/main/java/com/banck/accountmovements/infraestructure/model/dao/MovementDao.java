@@ -2,6 +2,8 @@ package com.banck.accountmovements.infraestructure.model.dao;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 /**
@@ -10,6 +12,12 @@ import org.springframework.data.mongodb.core.mapping.Document;
  */
 @Data
 @Document("movement")
+@CompoundIndexes({
+    @CompoundIndex(name = "account_timestamp_idx", def = "{'account': 1, 'timestamp': -1, '_id': -1}"),
+    @CompoundIndex(name = "customer_timestamp_idx", def = "{'customer': 1, 'timestamp': -1, '_id': -1}"),
+    @CompoundIndex(name = "customer_account_timestamp_idx", def = "{'customer': 1, 'account': 1, 'timestamp': -1, '_id': -1}"),
+    @CompoundIndex(name = "timestamp_id_idx", def = "{'timestamp': 1, '_id': 1}")
+})
 public class MovementDao {
 
     @Id
@@ -17,12 +25,25 @@ public class MovementDao {
     public String movementType;
     public String account;
     public String customer;
-     public String transferAccount;
+    public String transferAccount;
     public String transferCustomer;
+    /**
+     * Se mantiene para los lectores existentes; el valor de referencia es
+     * amountMinor.
+     */
     public double amount;
+    /**
+     * Monto en centimos. Es nulo en los documentos aun no migrados.
+     */
+    public Long amountMinor;
     public String concept;
     public String observations;
     public String date;
     public String time;
+    /**
+     * Fecha y hora del movimiento en milisegundos desde epoch. Es nulo en los
+     * documentos aun no migrados.
+     */
+    public Long timestamp;
     public boolean correct;
 }
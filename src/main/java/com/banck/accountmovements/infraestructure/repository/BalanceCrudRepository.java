@@ -0,0 +1,150 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.aplication.model.BalanceRepository;
+import com.banck.accountmovements.domain.Balance;
+import com.banck.accountmovements.infraestructure.model.dao.BalanceDao;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import java.util.Optional;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ *
+ * @author jonavcar
+ */
+public class BalanceCrudRepository implements BalanceRepository {
+
+    static final int REBUILD_ATTEMPTS = 10;
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Override
+    public Mono<Balance> get(String account) {
+        return template.findById(account, BalanceDao.class).map(this::BalanceDaoToBalance);
+    }
+
+    @Override
+    public Mono<Balance> add(String account, long amountMinor) {
+        return template.findAndModify(
+                Query.query(Criteria.where("_id").is(account)),
+                new Update().inc("amountMinor", amountMinor).inc("version", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                BalanceDao.class).map(this::BalanceDaoToBalance);
+    }
+
+    @Override
+    public Mono<Balance> seed(String account, long amountMinor) {
+        return template.upsert(
+                Query.query(Criteria.where("_id").is(account)),
+                new Update().setOnInsert("amountMinor", amountMinor).setOnInsert("version", 0L),
+                BalanceDao.class)
+                .filter(result -> result.getUpsertedId() != null)
+                .map(result -> {
+                    Balance b = new Balance();
+                    b.setAccount(account);
+                    b.setAmountMinor(amountMinor);
+                    return b;
+                });
+    }
+
+    @Override
+    public Flux<String> accounts() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.project("account"),
+                UnionWithOperation.unionWith(MovementArchiver.COLLECTION).pipeline(Aggregation.project("account")),
+                Aggregation.group("account"))
+                .withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+        return template.aggregate(aggregation, template.getCollectionName(MovementDao.class), Document.class)
+                .mapNotNull(d -> d.getString("_id"));
+    }
+
+    @Override
+    public Mono<Balance> rebuild(String account) {
+        return Mono.defer(() -> template.findById(account, BalanceDao.class)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(current -> total(account).flatMap(total -> write(account, current, total))))
+                .repeatWhenEmpty(REBUILD_ATTEMPTS, repeat -> repeat)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                "El saldo de la cuenta " + account + " cambio en cada intento de reconstruccion")))
+                .map(this::BalanceDaoToBalance);
+    }
+
+    /**
+     * Escribe el total si el saldo sigue como se leyo; vacio si cambio.
+     */
+    private Mono<BalanceDao> write(String account, Optional<BalanceDao> current, long total) {
+        if (current.isEmpty()) {
+            BalanceDao bd = new BalanceDao();
+            bd.setAccount(account);
+            bd.setAmountMinor(total);
+            return template.insert(bd).onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+        }
+        return template.findAndModify(
+                Query.query(unchanged(current.get())),
+                new Update().set("amountMinor", total).inc("version", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                BalanceDao.class);
+    }
+
+    private Mono<Long> total(String account) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("account").is(account)),
+                UnionWithOperation.unionWith(MovementArchiver.COLLECTION)
+                        .pipeline(Aggregation.match(Criteria.where("account").is(account))),
+                Aggregation.group("account").sum(MovementAmounts.AMOUNT_MINOR).as("amountMinor"));
+        return template.aggregate(aggregation, template.getCollectionName(MovementDao.class), Document.class)
+                .next()
+                .map(d -> d.get("amountMinor", Number.class).longValue())
+                .defaultIfEmpty(0L);
+    }
+
+    @Override
+    public Mono<Long> removeOrphans() {
+        return template.findAll(BalanceDao.class)
+                .concatMap(bd -> hasMovements(bd.getAccount())
+                .filter(has -> !has)
+                .flatMap(orphan -> template.remove(Query.query(unchanged(bd)), BalanceDao.class)))
+                .map(result -> result.getDeletedCount())
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Boolean> hasMovements(String account) {
+        Query movements = Query.query(Criteria.where("account").is(account));
+        return template.exists(movements, MovementDao.class)
+                .flatMap(hot -> hot ? Mono.just(true) : template.exists(movements, MovementArchiver.COLLECTION));
+    }
+
+    /**
+     * El saldo con la misma version que se leyo. Los saldos anteriores al
+     * campo version no lo tienen.
+     */
+    private Criteria unchanged(BalanceDao bd) {
+        Criteria version = bd.getVersion() == 0
+                ? new Criteria().orOperator(Criteria.where("version").is(0L), Criteria.where("version").exists(false))
+                : Criteria.where("version").is(bd.getVersion());
+        return new Criteria().andOperator(
+                Criteria.where("_id").is(bd.getAccount()),
+                Criteria.where("amountMinor").is(bd.getAmountMinor()),
+                version);
+    }
+
+    public Balance BalanceDaoToBalance(BalanceDao bd) {
+        Balance b = new Balance();
+        b.setAccount(bd.getAccount());
+        b.setAmountMinor(bd.getAmountMinor());
+        return b;
+    }
+
+}
@@ -1,14 +1,14 @@
 package com.banck.accountmovements.infraestructure.repository;
 
 import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
-import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
 /**
  *
  * @author jonavcar
  */
-public interface IMovementCrudRepository extends ReactiveCrudRepository<MovementDao, String> {
+public interface IMovementCrudRepository extends ReactiveMongoRepository<MovementDao, String> {
 
     Flux<MovementDao> findAllByAccount(String account);
 
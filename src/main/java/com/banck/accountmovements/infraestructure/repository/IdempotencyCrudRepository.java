@@ -0,0 +1,68 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.aplication.model.IdempotencyRepository;
+import com.banck.accountmovements.domain.StoredResponse;
+import com.banck.accountmovements.infraestructure.model.dao.IdempotencyDao;
+import java.util.Date;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+/**
+ *
+ * @author jonavcar
+ */
+public class IdempotencyCrudRepository implements IdempotencyRepository {
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Override
+    public Mono<StoredResponse> get(String key) {
+        return template.findById(key, IdempotencyDao.class).map(this::IdempotencyDaoToStoredResponse);
+    }
+
+    @Override
+    public Mono<Boolean> reserve(String key, String requestHash) {
+        IdempotencyDao dao = new IdempotencyDao();
+        dao.setKey(key);
+        dao.setRequestHash(requestHash);
+        dao.setCompleted(false);
+        dao.setCreatedAt(new Date());
+        return template.insert(dao)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+    }
+
+    @Override
+    public Mono<StoredResponse> complete(StoredResponse response) {
+        return template.findAndModify(
+                Query.query(Criteria.where("_id").is(response.getKey())),
+                new Update().set("completed", true)
+                        .set("movement", response.getMovement())
+                        .set("message", response.getMessage()),
+                FindAndModifyOptions.options().returnNew(true),
+                IdempotencyDao.class).map(this::IdempotencyDaoToStoredResponse);
+    }
+
+    @Override
+    public Mono<Void> release(String key) {
+        return template.remove(Query.query(Criteria.where("_id").is(key).and("completed").is(false)), IdempotencyDao.class).then();
+    }
+
+    public StoredResponse IdempotencyDaoToStoredResponse(IdempotencyDao dao) {
+        StoredResponse r = new StoredResponse();
+        r.setKey(dao.getKey());
+        r.setRequestHash(dao.getRequestHash());
+        r.setCompleted(dao.getCompleted() == null || dao.getCompleted());
+        r.setMovement(dao.getMovement());
+        r.setMessage(dao.getMessage());
+        return r;
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import java.util.List;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+
+/**
+ * Monto en centimos de un movimiento dentro de una agregacion: amountMinor o,
+ * en los documentos que la migracion aun no completo, amount * 100
+ * redondeado, igual que al leerlos uno por uno.
+ *
+ * @author jonavcar
+ */
+final class MovementAmounts {
+
+    static final AggregationExpression AMOUNT_MINOR = context -> new Document("$ifNull", List.of(
+            "$amountMinor",
+            new Document("$toLong", new Document("$round", List.of(new Document("$multiply", List.of("$amount", 100)), 0)))));
+
+    private MovementAmounts() {
+    }
+}
@@ -0,0 +1,176 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Mueve a movement_archive los movimientos anteriores al horizonte, por lotes
+ * de batchSize con una pausa entre lotes para no competir con las escrituras.
+ * Cada lote se copia antes de borrarse, por lo que un corte deja el documento
+ * en los dos niveles y el siguiente pase lo completa; las lecturas descartan
+ * el duplicado. Solo se borra de la coleccion principal el documento que
+ * sigue igual a la copia; si cambio o se elimino mientras tanto, la copia se
+ * retira del archivo.
+ *
+ * @author jonavcar
+ */
+@Component
+public class MovementArchiver {
+
+    public static final String COLLECTION = "movement_archive";
+    static final int DELETE_CONCURRENCY = 8;
+
+    Logger logger = LoggerFactory.getLogger(MovementArchiver.class);
+
+    private final ReactiveMongoTemplate template;
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final Duration horizon;
+    private final int batchSize;
+    private final Duration pause;
+    private final Duration interval;
+    private final Counter moved;
+    private final Timer batches;
+
+    public MovementArchiver(ReactiveMongoTemplate template, MeterRegistry registry,
+            @Value("${movement.archive.enabled:false}") boolean enabled,
+            @Value("${movement.archive.horizon:365d}") Duration horizon,
+            @Value("${movement.archive.batch-size:500}") int batchSize,
+            @Value("${movement.archive.pause:200ms}") Duration pause,
+            @Value("${movement.archive.interval:1h}") Duration interval) {
+        this.template = template;
+        this.registry = registry;
+        this.enabled = enabled;
+        this.horizon = horizon;
+        this.batchSize = batchSize;
+        this.pause = pause;
+        this.interval = interval;
+        this.moved = registry.counter("movement.archive.moved");
+        this.batches = Timer.builder("movement.archive.batch").register(registry);
+    }
+
+    /**
+     * Los movimientos con timestamp anterior a este instante pueden estar en
+     * el archivo.
+     */
+    public long cutoff() {
+        return System.currentTimeMillis() - horizon.toMillis();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            Flux.interval(Duration.ZERO, interval)
+                    .onBackpressureDrop()
+                    .concatMap(tick -> archive().onErrorResume(e -> {
+                        logger.error("Fallo el archivo de movimientos", e);
+                        return Mono.just(0L);
+                    }))
+                    .filter(count -> count > 0)
+                    .subscribe(count -> logger.info("Movimientos archivados: {}", count));
+        }
+    }
+
+    /**
+     * Archiva lotes hasta que no queden movimientos anteriores al horizonte.
+     */
+    public Mono<Long> archive() {
+        return Mono.defer(() -> {
+            long cutoff = cutoff();
+            return moveBatch(cutoff)
+                    .expand(count -> count < batchSize
+                    ? Mono.empty()
+                    : Mono.delay(pause).then(moveBatch(cutoff)))
+                    .reduce(0L, Long::sum);
+        });
+    }
+
+    private Mono<Long> moveBatch(long cutoff) {
+        String hot = template.getCollectionName(MovementDao.class);
+        Query oldest = Query.query(Criteria.where("timestamp").lt(cutoff))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp"))
+                .limit(batchSize);
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return template.find(oldest, Document.class, hot)
+                    .collectList()
+                    .flatMap(documents -> documents.isEmpty()
+                    ? Mono.just(0L)
+                    : copy(documents)
+                            .then(remove(documents, cutoff))
+                            .map(removed -> {
+                                moved.increment(removed);
+                                return (long) documents.size();
+                            }))
+                    .doOnSuccess(count -> sample.stop(batches));
+        });
+    }
+
+    /**
+     * Escribe el lote en el archivo reemplazando las copias que dejo un pase
+     * interrumpido, que pueden ser de una version anterior del movimiento.
+     */
+    private Mono<Void> copy(List<Document> documents) {
+        List<ReplaceOneModel<Document>> replacements = documents.stream()
+                .map(d -> new ReplaceOneModel<>(Filters.eq("_id", d.get("_id")), d, new ReplaceOptions().upsert(true)))
+                .collect(Collectors.toList());
+        return template.getCollection(COLLECTION)
+                .flatMap(collection -> Mono.from(collection.bulkWrite(replacements, new BulkWriteOptions().ordered(false))))
+                .then();
+    }
+
+    /**
+     * Borra de la coleccion principal los documentos que siguen anteriores al
+     * corte e iguales a la copia y devuelve cuantos borro. La copia de los que
+     * no se borraron se retira del archivo: el siguiente pase archiva la
+     * version nueva, si sigue siendo anterior al horizonte.
+     */
+    private Mono<Long> remove(List<Document> documents, long cutoff) {
+        String hot = template.getCollectionName(MovementDao.class);
+        return Mono.zip(template.getCollection(hot), template.getCollection(COLLECTION))
+                .flatMap(collections -> Flux.fromIterable(documents)
+                .flatMap(d -> remove(collections.getT1(), collections.getT2(), d, cutoff), DELETE_CONCURRENCY)
+                .reduce(0L, Long::sum));
+    }
+
+    private Mono<Long> remove(MongoCollection<Document> hot, MongoCollection<Document> archive, Document document, long cutoff) {
+        return Mono.from(hot.deleteOne(Filters.and(Filters.lt("timestamp", cutoff), unchanged(document))))
+                .flatMap(result -> result.getDeletedCount() > 0
+                ? Mono.just(1L)
+                : Mono.from(archive.deleteOne(unchanged(document))).thenReturn(0L));
+    }
+
+    /**
+     * Coincide solo con el documento que tiene exactamente los campos leidos.
+     */
+    private Bson unchanged(Document document) {
+        return Filters.and(document.entrySet().stream()
+                .map(field -> Filters.eq(field.getKey(), field.getValue()))
+                .collect(Collectors.toList()));
+    }
+
+}
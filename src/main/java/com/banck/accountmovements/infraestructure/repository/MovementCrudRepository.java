@@ -1,48 +1,392 @@
 package com.banck.accountmovements.infraestructure.repository;
 
+import com.banck.accountmovements.aplication.MovementLane;
+import com.banck.accountmovements.domain.Balance;
 import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.domain.MovementQuery;
+import com.banck.accountmovements.domain.MovementSummary;
 import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.utils.Money;
+import com.banck.accountmovements.utils.MovementFields;
+import com.banck.accountmovements.utils.MovementStages;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Field;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import com.banck.accountmovements.aplication.model.BalanceRepository;
 import com.banck.accountmovements.aplication.model.MovementRepository;
+import com.banck.accountmovements.aplication.model.RollupRepository;
 
 /**
+ * Los movimientos anteriores al horizonte de MovementArchiver viven en
+ * movement_archive; las lecturas que llegan a ese tramo consultan los dos
+ * niveles.
  *
  * @author jonavcar
  */
 @Component
 public class MovementCrudRepository implements MovementRepository {
 
+    static final Comparator<Movement> NEWEST_FIRST = Comparator.comparingLong(Movement::getTimestamp)
+            .thenComparing(Movement::getMovement, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .reversed();
+
+    Logger logger = LoggerFactory.getLogger(MovementCrudRepository.class);
+
     @Autowired
     IMovementCrudRepository movementRepository;
 
+    @Autowired
+    BalanceRepository balanceRepository;
+
+    @Autowired
+    RollupRepository rollupRepository;
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Autowired(required = false)
+    TransactionalOperator transactionalOperator;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Autowired
+    MovementStages stages;
+
+    @Autowired
+    MovementArchiver archiver;
+
+    @Autowired
+    MovementLane lane;
+
+    @Value("${movement.transactional:false}")
+    boolean transactionalWrites;
+
+    @Value("${movement.stream.batch-size:256}")
+    int streamBatchSize;
+
+    @Value("${movement.balance.scan-warn-threshold:10000}")
+    long scanWarnThreshold;
+
+    @Value("${movement.group-commit.enabled:false}")
+    boolean groupCommitEnabled;
+
+    @Value("${movement.group-commit.max-batch:128}")
+    int groupCommitMaxBatch;
+
+    @Value("${movement.group-commit.linger:2ms}")
+    Duration groupCommitLinger;
+
+    @Value("${movement.group-commit.concurrency:4}")
+    int groupCommitConcurrency;
+
+    MovementGroupCommit groupCommit;
+
+    /**
+     * Las transferencias usan transacciones salvo que se desactiven; si Mongo
+     * no corre como replica set el servicio no arranca, en lugar de fallar en
+     * cada transferencia.
+     */
+    @PostConstruct
+    void init() {
+        if (transactionalWrites && transactionalOperator == null) {
+            throw new IllegalStateException("movement.transactional=true requiere movement.transfer.transactional=true");
+        }
+        if (transactionalOperator != null && !Boolean.TRUE.equals(changeStreamsSupported().block())) {
+            throw new IllegalStateException("Las transferencias usan transacciones y Mongo no corre como replica set: "
+                    + "configure un replica set o movement.transfer.transactional=false");
+        }
+        if (groupCommitEnabled) {
+            groupCommit = new MovementGroupCommit(template, registry, groupCommitMaxBatch,
+                    groupCommitLinger, groupCommitConcurrency, this::applyAll, this::reconcile);
+        }
+    }
+
     @Override
     public Mono<Movement> get(String movement) {
-        return movementRepository.findById(movement).map(this::MovementDaoToMovement);
+        return timed("get", movementRepository.findById(movement)
+                .switchIfEmpty(Mono.defer(() -> template.findById(movement, MovementDao.class, MovementArchiver.COLLECTION))))
+                .map(this::MovementDaoToMovement);
     }
 
     @Override
     public Flux<Movement> list() {
-        return movementRepository.findAll().map(this::MovementDaoToMovement);
+        return history("list", new Criteria());
+    }
+
+    @Override
+    public Flux<Movement> list(MovementQuery query) {
+        return page("list", new Criteria(), query);
     }
 
     @Override
     public Mono<Movement> create(Movement movement) {
-        //Flux<MovementDao> fmd = movementRepository.findAllByCustomer(movement.getCustomer());
-        return movementRepository.save(MovementToMovementDao(movement)).map(this::MovementDaoToMovement);
+        if (groupCommit != null) {
+            return timed("create", stages.time("save", movement.getAccount(), groupCommit.insert(MovementToMovementDao(movement))))
+                    .map(this::MovementDaoToMovement);
+        }
+        Mono<MovementDao> write = stages.time("save", movement.getAccount(), movementRepository.insert(MovementToMovementDao(movement)))
+                .flatMap(md -> stages.time("apply", md.getAccount(), apply(md.getAccount(), md.getTimestamp(), md.getAmountMinor(), 1)).thenReturn(md));
+        return timed("create", writes(write)).map(this::MovementDaoToMovement);
+    }
+
+    @Override
+    public Flux<Movement> createAll(List<Movement> movements) {
+        List<MovementDao> mds = movements.stream().map(this::MovementToMovementDao).collect(Collectors.toList());
+        Mono<List<MovementDao>> write = movementRepository.insert(mds).collectList()
+                .flatMap(saved -> applyAll(saved).thenReturn(saved));
+        return timed("createAll", transactionalWrites ? transactional(write) : write.onErrorResume(e -> stored(mds, e)))
+                .flatMapMany(Flux::fromIterable)
+                .map(this::MovementDaoToMovement);
+    }
+
+    /**
+     * Sin transacciones, un lote que fallo puede haber guardado parte de sus
+     * movimientos sin aplicar sus saldos. Se reconstruyen las cuentas de los
+     * que quedaron guardados y solo esos se devuelven; si no quedo ninguno,
+     * o la reconstruccion falla, se devuelve el error original. Corre dentro
+     * del carril de la cuenta del lote.
+     */
+    private Mono<List<MovementDao>> stored(List<MovementDao> mds, Throwable error) {
+        Map<String, MovementDao> byId = mds.stream().collect(Collectors.toMap(MovementDao::getMovement, md -> md));
+        return template.find(Query.query(Criteria.where("_id").in(byId.keySet())), MovementDao.class)
+                .filter(md -> md.getAccount() != null && md.getAccount().equals(byId.get(md.getMovement()).getAccount()))
+                .collectList()
+                .flatMap(saved -> {
+                    if (saved.isEmpty()) {
+                        return Mono.<List<MovementDao>>error(error);
+                    }
+                    logger.warn("El lote de {} movimientos guardo {} antes de fallar; se reconstruyen sus cuentas",
+                            mds.size(), saved.size(), error);
+                    return rebuild(saved.stream().map(MovementDao::getAccount).collect(Collectors.toSet()))
+                            .thenReturn(saved)
+                            .onErrorResume(e -> {
+                                logger.error("No se pudieron reconstruir las cuentas del lote", e);
+                                error.addSuppressed(e);
+                                return Mono.error(error);
+                            });
+                });
+    }
+
+    /**
+     * Aplica los movimientos insertados con una sola actualizacion de saldo
+     * por cuenta.
+     */
+    private Mono<Void> applyAll(List<MovementDao> saved) {
+        Map<String, List<MovementDao>> byAccount = saved.stream()
+                .collect(Collectors.groupingBy(MovementDao::getAccount));
+        return Flux.fromIterable(byAccount.values())
+                .concatMap(mds -> apply(mds.get(0).getAccount(), mds.get(0).getTimestamp(),
+                mds.stream().mapToLong(MovementDao::getAmountMinor).sum(), mds.size()))
+                .then();
+    }
+
+    /**
+     * Recalcula el saldo y los cierres de las cuentas de un lote que se guardo
+     * sin que se aplicaran sus saldos. Se puede repetir sin efectos extra.
+     * Cada cuenta se recalcula dentro de su carril: un movimiento concurrente
+     * que la reconstruccion ya leyo no vuelve a sumarse con su propio $inc.
+     */
+    private Mono<Void> reconcile(Set<String> accounts) {
+        return Flux.fromIterable(accounts)
+                .concatMap(account -> lane.execute(account, () -> rebuild(Set.of(account))))
+                .then();
+    }
+
+    private Mono<Void> rebuild(Set<String> accounts) {
+        return Flux.fromIterable(accounts)
+                .concatMap(account -> balanceRepository.rebuild(account).then(rollupRepository.rebuild(account)))
+                .then();
+    }
+
+    @Override
+    public Mono<Movement> transfer(Movement charge, Movement payment) {
+        List<MovementDao> legs = List.of(MovementToMovementDao(charge), MovementToMovementDao(payment));
+        Mono<MovementDao> write = stages.time("save", charge.getAccount(), template.insertAll(legs).collectList())
+                .flatMap(saved -> stages.time("first-leg", charge.getAccount(),
+                apply(charge.getAccount(), charge.getTimestamp(), charge.getAmountMinor(), 1))
+                .then(stages.time("second-leg", payment.getAccount(),
+                        apply(payment.getAccount(), payment.getTimestamp(), payment.getAmountMinor(), 1)))
+                .thenReturn(saved.get(0))
+                .onErrorResume(e -> transactionalOperator == null
+                ? repair(charge.getAccount(), payment.getAccount(), e).thenReturn(saved.get(0))
+                : Mono.error(e)));
+        return timed("transfer", transactional(write)).map(this::MovementDaoToMovement);
+    }
+
+    /**
+     * Sin transacciones, una transferencia cuyos dos movimientos ya se
+     * guardaron pero uno de los saldos no se actualizo queda registrada:
+     * los saldos y cierres de ambas cuentas se reconstruyen desde sus
+     * movimientos. Corre dentro del carril de la transferencia. Si la
+     * reconstruccion tambien falla se devuelve el error original.
+     */
+    private Mono<Void> repair(String account, String other, Throwable error) {
+        logger.warn("Fallo el saldo de una transferencia entre {} y {}; se reconstruyen ambas cuentas", account, other, error);
+        return rebuild(Set.copyOf(List.of(account, other)))
+                .doOnSuccess(done -> registry.counter("movement.transfer.repaired").increment())
+                .onErrorResume(e -> {
+                    logger.error("No se pudieron reconstruir las cuentas {} y {}", account, other, e);
+                    error.addSuppressed(e);
+                    return Mono.error(error);
+                });
+    }
+
+    /**
+     * Los movimientos sueltos, los lotes y las modificaciones solo usan
+     * transaccion con movement.transactional=true.
+     */
+    private <T> Mono<T> writes(Mono<T> write) {
+        return transactionalWrites ? transactional(write) : write;
+    }
+
+    /**
+     * Registra el movimiento, el saldo y los cierres en una sola transaccion
+     * y la reintenta si Mongo la aborta por un conflicto de escritura.
+     */
+    private <T> Mono<T> transactional(Mono<T> write) {
+        if (transactionalOperator == null) {
+            return write;
+        }
+        return transactionalOperator.transactional(write)
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(10)).filter(this::isTransient));
+    }
+
+    private boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException
+                    && ((MongoException) cause).hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Actualiza el saldo de la cuenta y los cierres del dia y del mes del
+     * movimiento.
+     */
+    private Mono<Void> apply(String account, Long timestamp, long amountMinor, long count) {
+        long at = timestamp != null ? timestamp : System.currentTimeMillis();
+        return balanceRepository.add(account, amountMinor)
+                .switchIfEmpty(Mono.defer(() -> seed(account, amountMinor)))
+                .then(rollupRepository.record(account, at, amountMinor, count));
+    }
+
+    /**
+     * Una cuenta sin documento de saldo (anterior a la reconstruccion) lo
+     * recibe con el total de sus movimientos, que ya incluye los que se
+     * acaban de insertar. Si otra escritura lo creo primero, el monto se
+     * suma sobre ese documento. Sin transacciones, dos instancias que siembran
+     * la misma cuenta a la vez solo quedan ordenadas por el carril de cada
+     * una.
+     */
+    private Mono<Balance> seed(String account, long amountMinor) {
+        return balanceByAccount(account)
+                .flatMap(total -> balanceRepository.seed(account, total))
+                .switchIfEmpty(Mono.defer(() -> balanceRepository.add(account, amountMinor)));
     }
 
     @Override
     public Mono<Movement> update(String movement, Movement c) {
         c.setMovement(movement);
-        return movementRepository.save(MovementToMovementDao(c)).map(this::MovementDaoToMovement);
+        Mono<MovementDao> write = previous(movement)
+                .flatMap(previous -> {
+                    keepStamp(c, previous);
+                    return unapply(previous);
+                })
+                .then(Mono.defer(() -> {
+                    if (c.getTimestamp() == 0) {
+                        c.setTimestamp(System.currentTimeMillis());
+                    }
+                    return movementRepository.save(MovementToMovementDao(c));
+                }))
+                .flatMap(md -> unarchive(movement).thenReturn(md))
+                .flatMap(md -> apply(md.getAccount(), md.getTimestamp(), md.getAmountMinor(), 1).thenReturn(md));
+        return writes(write).map(this::MovementDaoToMovement);
     }
 
     @Override
     public void delete(String movement) {
-        movementRepository.deleteById(movement).subscribe();
+        Mono<Void> write = previous(movement)
+                .flatMap(md -> movementRepository.deleteById(movement)
+                .then(unarchive(movement))
+                .then(unapply(md)));
+        writes(write).subscribe();
+    }
+
+    /**
+     * Una modificacion que no trae fecha conserva la del movimiento original,
+     * para que no cambie su lugar en las paginas ni pase al archivo.
+     */
+    private void keepStamp(Movement c, MovementDao previous) {
+        if (c.getTimestamp() == 0 && previous.getTimestamp() != null) {
+            c.setTimestamp(previous.getTimestamp());
+        }
+        if (c.getDate() == null) {
+            c.setDate(previous.getDate());
+        }
+        if (c.getTime() == null) {
+            c.setTime(previous.getTime());
+        }
+    }
+
+    /**
+     * Descuenta el movimiento anterior del saldo y de los cierres de su dia y
+     * su mes. Los movimientos sin timestamp solo estan en los cierres si se
+     * reconstruyeron, y la reconstruccion los ubica en el dia de la epoca.
+     */
+    private Mono<Void> unapply(MovementDao previous) {
+        long amountMinor = amountMinorOf(previous);
+        return balanceRepository.add(previous.getAccount(), -1 * amountMinor)
+                .then(rollupRepository.record(previous.getAccount(),
+                        previous.getTimestamp() != null ? previous.getTimestamp() : 0L, -1 * amountMinor, -1));
+    }
+
+    /**
+     * Busca el movimiento a modificar en la coleccion principal y, si no
+     * esta, en el archivo.
+     */
+    private Mono<MovementDao> previous(String movement) {
+        return movementRepository.findById(movement)
+                .switchIfEmpty(Mono.defer(() -> template.findById(movement, MovementDao.class, MovementArchiver.COLLECTION)));
+    }
+
+    /**
+     * Saca el movimiento del archivo despues de escribir en la coleccion
+     * principal, para que un fallo entre los dos pasos lo deje duplicado y no
+     * perdido; con movement.transactional van en la misma transaccion.
+     */
+    private Mono<Void> unarchive(String movement) {
+        return template.remove(Query.query(Criteria.where("_id").is(movement)), MovementArchiver.COLLECTION).then();
     }
 
     public Movement MovementDaoToMovement(MovementDao md) {
@@ -53,11 +397,12 @@ public class MovementCrudRepository implements MovementRepository {
         m.setTransferAccount(md.getTransferAccount());
         m.setTransferCustomer(md.getTransferCustomer());
         m.setCustomer(md.getCustomer());
-        m.setAmount(md.getAmount());
+        m.setAmountMinor(amountMinorOf(md));
         m.setConcept(md.getConcept());
         m.setObservations(md.getObservations());
         m.setDate(md.getDate());
         m.setTime(md.getTime());
+        m.setTimestamp(md.getTimestamp() != null ? md.getTimestamp() : 0);
         m.setCorrect(md.isCorrect());
         return m;
     }
@@ -71,22 +416,156 @@ public class MovementCrudRepository implements MovementRepository {
         md.setTransferCustomer(m.getTransferCustomer());
         md.setCustomer(m.getCustomer());
         md.setAmount(m.getAmount());
+        md.setAmountMinor(m.getAmountMinor());
         md.setConcept(m.getConcept());
         md.setObservations(m.getObservations());
         md.setDate(m.getDate());
         md.setTime(m.getTime());
+        md.setTimestamp(m.getTimestamp());
         md.setCorrect(m.isCorrect());
         return md;
     }
 
+    /**
+     * Los documentos anteriores a la migracion solo tienen el monto decimal.
+     */
+    private long amountMinorOf(MovementDao md) {
+        return md.getAmountMinor() != null ? md.getAmountMinor() : Money.toMinor(md.getAmount());
+    }
+
     @Override
     public Flux<Movement> listByCustomer(String customer) {
-        return movementRepository.findAllByCustomer(customer).map(this::MovementDaoToMovement);
+        return history("listByCustomer", Criteria.where("customer").is(customer));
+    }
+
+    @Override
+    public Flux<Movement> listByCustomer(String customer, MovementQuery query) {
+        return page("pageByCustomer", Criteria.where("customer").is(customer), query);
+    }
+
+    @Override
+    public Flux<Movement> listByAccount(String account, MovementQuery query) {
+        return page("pageByAccount", Criteria.where("account").is(account), query);
+    }
+
+    /**
+     * Lee el cursor de Mongo por lotes y solo pide el siguiente lote cuando el
+     * cliente consumio el anterior, sin acumular la respuesta en memoria.
+     */
+    private Flux<Movement> stream(String name, Query query, String collection) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            Counter documents = registry.counter("movement.repository.documents", "query", name);
+            return template.find(query.cursorBatchSize(streamBatchSize), MovementDao.class, collection)
+                    .limitRate(streamBatchSize)
+                    .doOnNext(md -> documents.increment())
+                    .doOnComplete(() -> sample.stop(timer(name, "success")))
+                    .doOnError(e -> sample.stop(timer(name, "error")))
+                    .map(this::MovementDaoToMovement);
+        });
+    }
+
+    /**
+     * Historial completo: primero la coleccion principal y luego el archivo.
+     */
+    private Flux<Movement> history(String name, Criteria owner) {
+        return stream(name, Query.query(owner), template.getCollectionName(MovementDao.class))
+                .concatWith(stream(name + "Archive", Query.query(owner), MovementArchiver.COLLECTION));
+    }
+
+    /**
+     * Una pagina que empieza despues del horizonte se resuelve solo con la
+     * coleccion principal. Si llega antes, se piden las dos y se mezclan en
+     * orden (timestamp, _id) descendente; un movimiento que esta en ambas por
+     * un pase de archivo interrumpido aparece una sola vez.
+     */
+    private Flux<Movement> page(String name, Criteria owner, MovementQuery query) {
+        Flux<Movement> hot = stream(name, pageQuery(owner, query), template.getCollectionName(MovementDao.class));
+        if (query.getFromTimestamp() != null && query.getFromTimestamp() >= archiver.cutoff()) {
+            return hot;
+        }
+        Flux<Movement> archived = stream(name + "Archive", pageQuery(owner, query), MovementArchiver.COLLECTION);
+        if (!sorted(query)) {
+            return hot.concatWith(archived);
+        }
+        Flux<Movement> merged = Flux.mergeComparing(streamBatchSize, NEWEST_FIRST, hot, archived)
+                .distinctUntilChanged(m -> m.getMovement() != null ? m.getMovement() : m);
+        return query.getSize() > 0 ? merged.take(query.getSize()) : merged;
+    }
+
+    private boolean sorted(MovementQuery query) {
+        return query.getSize() > 0 || query.getFromTimestamp() != null
+                || query.getToTimestamp() != null || query.getAfterTimestamp() != null;
+    }
+
+    private <T> Mono<T> timed(String name, Mono<T> operation) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return operation
+                    .doOnSuccess(result -> sample.stop(timer(name, "success")))
+                    .doOnError(e -> sample.stop(timer(name, "error")));
+        });
+    }
+
+    private Timer timer(String name, String outcome) {
+        return Timer.builder("movement.repository.queries")
+                .tag("query", name)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Pagina por clave (timestamp, _id) en orden descendente, de modo que cada
+     * pagina se resuelve recorriendo solo su tramo del indice. Una consulta
+     * que solo pide campos conserva el orden natural del listado completo.
+     * Las paginas ordenadas siempre leen timestamp y _id para poder mezclar
+     * los dos niveles.
+     */
+    private Query pageQuery(Criteria owner, MovementQuery query) {
+        List<Criteria> criteria = new ArrayList<>();
+        criteria.add(owner);
+        if (query.getFromTimestamp() != null) {
+            criteria.add(Criteria.where("timestamp").gte(query.getFromTimestamp()));
+        }
+        if (query.getToTimestamp() != null) {
+            criteria.add(Criteria.where("timestamp").lt(query.getToTimestamp()));
+        }
+        if (query.getAfterTimestamp() != null) {
+            criteria.add(new Criteria().orOperator(
+                    Criteria.where("timestamp").lt(query.getAfterTimestamp()),
+                    new Criteria().andOperator(
+                            Criteria.where("timestamp").is(query.getAfterTimestamp()),
+                            Criteria.where("_id").lt(query.getAfterMovement()))));
+        }
+        Query page = Query.query(new Criteria().andOperator(criteria.toArray(new Criteria[0])));
+        if (sorted(query)) {
+            page.with(Sort.by(Sort.Direction.DESC, "timestamp", "_id")).limit(query.getSize());
+        }
+        if (query.getFields() != null) {
+            Field projection = page.fields();
+            if (sorted(query)) {
+                projection.include("timestamp");
+            } else if (!query.getFields().contains("movement")) {
+                projection.exclude("_id");
+            }
+            for (String field : query.getFields()) {
+                for (String column : MovementFields.columns(field)) {
+                    projection.include(column);
+                }
+            }
+        }
+        return page;
     }
 
     @Override
     public Flux<Movement> listByCustomerAndAccount(String customer, String account) {
-        return movementRepository.findAllByCustomerAndAccount(customer, account).map(this::MovementDaoToMovement);
+        return history("listByCustomerAndAccount", Criteria.where("customer").is(customer).and("account").is(account));
+    }
+
+    @Override
+    public Flux<Movement> listByCustomerAndAccount(String customer, String account, MovementQuery query) {
+        return page("listByCustomerAndAccount", Criteria.where("customer").is(customer).and("account").is(account), query);
     }
 
     @Override
@@ -94,9 +573,94 @@ public class MovementCrudRepository implements MovementRepository {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
+    static Aggregation balanceAggregation(String account) {
+        return Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("account").is(account)),
+                UnionWithOperation.unionWith(MovementArchiver.COLLECTION)
+                        .pipeline(Aggregation.match(Criteria.where("account").is(account))),
+                Aggregation.group("account").count().as("count").sum(MovementAmounts.AMOUNT_MINOR).as("amountMinor"));
+    }
+
+    static Aggregation summaryAggregation(String account) {
+        return Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("account").is(account)),
+                UnionWithOperation.unionWith(MovementArchiver.COLLECTION)
+                        .pipeline(Aggregation.match(Criteria.where("account").is(account))),
+                Aggregation.group("concept", "movementType").count().as("count").sum(MovementAmounts.AMOUNT_MINOR).as("amountMinor"),
+                Aggregation.project("count", "amountMinor", "concept", "movementType").andExclude("_id"));
+    }
+
+    @Override
+    public Mono<Long> balanceByAccount(String account) {
+        return timed("balanceByAccount", template.aggregate(balanceAggregation(account), template.getCollectionName(MovementDao.class), Document.class).next())
+                .flatMap(d -> {
+                    long scanned = d.get("count", Number.class).longValue();
+                    registry.summary("movement.balance.scanned").record(scanned);
+                    if (scanned > scanWarnThreshold) {
+                        logger.warn("El saldo de la cuenta {} recorrio {} movimientos", account, scanned);
+                    }
+                    return stages.scanned(scanned).thenReturn(d.get("amountMinor", Number.class).longValue());
+                })
+                .defaultIfEmpty(0L);
+    }
+
+    @Override
+    public Flux<MovementSummary> summaryByAccount(String account) {
+        return timed("summaryByAccount", template.aggregate(summaryAggregation(account), template.getCollectionName(MovementDao.class), Document.class).collectList())
+                .flatMapIterable(documents -> documents)
+                .map(d -> {
+                    MovementSummary s = new MovementSummary();
+                    s.setAccount(account);
+                    s.setConcept(d.getString("concept"));
+                    s.setMovementType(d.getString("movementType"));
+                    s.setCount(d.get("count", Number.class).longValue());
+                    s.setAmountMinor(d.get("amountMinor", Number.class).longValue());
+                    return s;
+                });
+    }
+
+    @Override
+    public Flux<Movement> changes() {
+        return template.changeStream(MovementDao.class)
+                .watchCollection(MovementDao.class)
+                .withOptions(options -> options.returnFullDocumentOnUpdate())
+                .listen()
+                .concatMap(event -> archived(event).flatMap(moved -> moved ? Mono.<Movement>empty() : Mono.fromSupplier(() -> {
+                    Movement m = event.getBody() != null ? MovementDaoToMovement(event.getBody()) : new Movement();
+                    if (m.getMovement() == null && event.getRaw() != null && event.getRaw().getDocumentKey() != null) {
+                        m.setMovement(event.getRaw().getDocumentKey().getString("_id").getValue());
+                    }
+                    // En las inserciones timestamp ya es el momento del cambio.
+                    if (event.getOperationType() != OperationType.INSERT && event.getTimestamp() != null) {
+                        m.setTimestamp(event.getTimestamp().toEpochMilli());
+                    }
+                    return m;
+                })));
+    }
+
+    @Override
+    public Mono<Boolean> changeStreamsSupported() {
+        return template.executeCommand(new Document("hello", 1))
+                .map(hello -> hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg")))
+                .onErrorReturn(false);
+    }
+
+    /**
+     * Las eliminaciones que hace el archivo no cambian el contenido visible,
+     * asi que no se publican como cambios.
+     */
+    private Mono<Boolean> archived(ChangeStreamEvent<MovementDao> event) {
+        if (event.getOperationType() != OperationType.DELETE || event.getRaw() == null
+                || event.getRaw().getDocumentKey() == null) {
+            return Mono.just(false);
+        }
+        return template.exists(Query.query(Criteria.where("_id").is(event.getRaw().getDocumentKey().getString("_id").getValue())),
+                MovementArchiver.COLLECTION);
+    }
+
     @Override
     public Flux<Movement> listByAccount(String account) {
-        return movementRepository.findAllByAccount(account).map(this::MovementDaoToMovement);
+        return history("listByAccount", Criteria.where("account").is(account));
     }
 
 }
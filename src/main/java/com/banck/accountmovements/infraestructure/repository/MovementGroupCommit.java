@@ -0,0 +1,169 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+/**
+ * Junta los create concurrentes en una sola insercion cada linger o cada
+ * maxBatch documentos. Cada llamada termina cuando Mongo confirma su lote y
+ * se aplicaron los saldos, igual que una insercion individual; si un
+ * documento del lote falla, solo falla la llamada que lo envio. Si el lote
+ * se guardo pero fallo la actualizacion de saldos, las llamadas terminan bien,
+ * porque sus movimientos ya estan registrados, y las cuentas del lote quedan
+ * en cola para reconciliarse.
+ *
+ * @author jonavcar
+ */
+public class MovementGroupCommit {
+
+    static final int DUPLICATE_KEY = 11000;
+    static final int RECONCILE_ATTEMPTS = 5;
+
+    Logger logger = LoggerFactory.getLogger(MovementGroupCommit.class);
+
+    private final ReactiveMongoTemplate template;
+    private final Function<List<MovementDao>, Mono<Void>> afterInsert;
+    private final Function<Set<String>, Mono<Void>> reconcile;
+    private final Sinks.Many<Pending> pending = Sinks.many().unicast().onBackpressureBuffer();
+    private final Sinks.Many<Set<String>> reconciles = Sinks.many().unicast().onBackpressureBuffer();
+    private final Counter reconciled;
+    private final DistributionSummary batchSize;
+    private final Timer linger;
+
+    public MovementGroupCommit(ReactiveMongoTemplate template, MeterRegistry registry,
+            int maxBatch, Duration maxLinger, int concurrency,
+            Function<List<MovementDao>, Mono<Void>> afterInsert, Function<Set<String>, Mono<Void>> reconcile) {
+        this.template = template;
+        this.afterInsert = afterInsert;
+        this.reconcile = reconcile;
+        this.reconciled = registry.counter("movement.group-commit.reconciled");
+        this.batchSize = DistributionSummary.builder("movement.group-commit.batch.size")
+                .tag("max", String.valueOf(maxBatch))
+                .register(registry);
+        this.linger = Timer.builder("movement.group-commit.linger")
+                .tag("max", maxLinger.toString())
+                .register(registry);
+        pending.asFlux()
+                .bufferTimeout(maxBatch, maxLinger)
+                .flatMap(this::flush, concurrency)
+                .subscribe();
+        reconciles.asFlux()
+                .concatMap(accounts -> Mono.defer(() -> this.reconcile.apply(accounts))
+                .retryWhen(Retry.backoff(RECONCILE_ATTEMPTS, Duration.ofSeconds(1)))
+                .doOnSuccess(done -> logger.info("Saldos reconciliados: {}", accounts))
+                .onErrorResume(e -> {
+                    logger.error("No se pudieron reconciliar los saldos de {}; ejecute /balance/rebuild", accounts, e);
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    public Mono<MovementDao> insert(MovementDao movement) {
+        return Mono.defer(() -> {
+            Pending p = new Pending(movement);
+            pending.emitNext(p, (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+            return p.result.asMono();
+        });
+    }
+
+    private Mono<Void> flush(List<Pending> batch) {
+        long now = System.nanoTime();
+        batchSize.record(batch.size());
+        List<Document> documents = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            linger.record(now - p.queued, TimeUnit.NANOSECONDS);
+            Document document = new Document();
+            template.getConverter().write(p.movement, document);
+            documents.add(document);
+        }
+        return template.getCollection(template.getCollectionName(MovementDao.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+                .map(result -> Collections.<Integer, RuntimeException>emptyMap())
+                .onErrorResume(MongoBulkWriteException.class, e -> e.getWriteConcernError() != null
+                ? Mono.error(e)
+                : Mono.just(failures(e)))
+                .flatMap(failed -> {
+                    List<MovementDao> inserted = new ArrayList<>(batch.size());
+                    for (int i = 0; i < batch.size(); i++) {
+                        RuntimeException error = failed.get(i);
+                        if (error != null) {
+                            batch.get(i).result.tryEmitError(error);
+                        } else {
+                            inserted.add(batch.get(i).movement);
+                        }
+                    }
+                    Mono<Void> applied = inserted.isEmpty() ? Mono.empty() : afterInsert.apply(inserted)
+                            .onErrorResume(e -> {
+                                Set<String> accounts = inserted.stream()
+                                        .map(MovementDao::getAccount)
+                                        .collect(Collectors.toCollection(TreeSet::new));
+                                logger.warn("El lote de {} movimientos se guardo pero fallo la actualizacion de saldos de {}: {}",
+                                        inserted.size(), accounts, e.getMessage());
+                                reconciled.increment();
+                                reconciles.emitNext(accounts, (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+                                return Mono.empty();
+                            });
+                    return applied.then(Mono.fromRunnable(() -> {
+                        for (int i = 0; i < batch.size(); i++) {
+                            if (!failed.containsKey(i)) {
+                                batch.get(i).result.tryEmitValue(batch.get(i).movement);
+                            }
+                        }
+                    }));
+                })
+                .onErrorResume(e -> {
+                    logger.warn("Fallo el lote de {} movimientos: {}", batch.size(), e.getMessage());
+                    batch.forEach(p -> p.result.tryEmitError(e));
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Map<Integer, RuntimeException> failures(MongoBulkWriteException e) {
+        Map<Integer, RuntimeException> failed = new HashMap<>();
+        for (BulkWriteError error : e.getWriteErrors()) {
+            failed.put(error.getIndex(), error.getCode() == DUPLICATE_KEY
+                    ? new DuplicateKeyException(error.getMessage())
+                    : new DataIntegrityViolationException(error.getMessage()));
+        }
+        return failed;
+    }
+
+    static class Pending {
+
+        final MovementDao movement;
+        final long queued = System.nanoTime();
+        final Sinks.One<MovementDao> result = Sinks.one();
+
+        Pending(MovementDao movement) {
+            this.movement = movement;
+        }
+    }
+
+}
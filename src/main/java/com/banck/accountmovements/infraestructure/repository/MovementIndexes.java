@@ -0,0 +1,95 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.infraestructure.model.dao.BalanceRollupDao;
+import com.banck.accountmovements.infraestructure.model.dao.IdempotencyDao;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.ReactiveHealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Crea al iniciar los indices declarados en los documentos, y los de
+ * movimientos tambien en el archivo, y publica su estado en el health de
+ * actuator como movementIndexes. Un indice que no se pudo crear deja el
+ * componente en DEGRADED: las consultas siguen funcionando, mas lentas, y el
+ * servicio no debe salir del balanceador por eso.
+ *
+ * @author jonavcar
+ */
+@Component
+public class MovementIndexes implements ReactiveHealthIndicator {
+
+    static final String BUILDING = "BUILDING";
+    static final String READY = "READY";
+    static final String FAILED = "FAILED";
+    static final Status DEGRADED = new Status("DEGRADED", "Hay indices que no se pudieron crear");
+
+    Logger logger = LoggerFactory.getLogger(MovementIndexes.class);
+
+    private final ReactiveMongoTemplate template;
+    private final List<Class<?>> documents = List.of(MovementDao.class, BalanceRollupDao.class, IdempotencyDao.class);
+    private final Map<String, String> status = new ConcurrentHashMap<>();
+
+    public MovementIndexes(ReactiveMongoTemplate template) {
+        this.template = template;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        Flux.fromIterable(documents)
+                .concatMap(this::ensure)
+                .concatWith(ensure(MovementDao.class, MovementArchiver.COLLECTION))
+                .subscribe(name -> logger.info("Indice listo: {}", name));
+    }
+
+    public Flux<String> ensure(Class<?> document) {
+        return ensure(document, template.getCollectionName(document));
+    }
+
+    public Flux<String> ensure(Class<?> document, String collection) {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(template.getConverter().getMappingContext());
+        ReactiveIndexOperations indexOps = template.indexOps(collection);
+        return Flux.fromIterable(resolver.resolveIndexFor(document)).concatMap(definition -> {
+            String indexName = definition.getIndexOptions().getString("name");
+            String name = collection + "." + (indexName != null ? indexName : definition.getIndexKeys().toJson());
+            status.put(name, BUILDING);
+            return indexOps.ensureIndex(definition)
+                    .doOnNext(created -> status.put(name, READY))
+                    .onErrorResume(e -> {
+                        logger.error("No se pudo crear el indice {}", name, e);
+                        status.put(name, FAILED + ": " + e.getMessage());
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    @Override
+    public Mono<Health> health() {
+        Map<String, String> indexes = new TreeMap<>(status);
+        Health.Builder builder;
+        if (indexes.values().stream().anyMatch(s -> s.startsWith(FAILED))) {
+            builder = Health.status(DEGRADED);
+        } else if (!indexes.isEmpty() && indexes.values().stream().allMatch(READY::equals)) {
+            builder = Health.up();
+        } else {
+            builder = Health.unknown();
+        }
+        return Mono.just(builder.withDetails(indexes).build());
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.utils.Money;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Completa los campos agregados a los documentos de movimientos existentes.
+ * Se ejecuta al iniciar cuando movement.migration.enabled=true.
+ *
+ * @author jonavcar
+ */
+@Component
+public class MovementMigration {
+
+    static final DateTimeFormatter FORMAT_DATE_TIME = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+    static final ZoneId ZONE = ZoneId.of("America/Bogota");
+
+    Logger logger = LoggerFactory.getLogger(MovementMigration.class);
+
+    private final ReactiveMongoTemplate template;
+    private final boolean enabled;
+
+    public MovementMigration(ReactiveMongoTemplate template, @Value("${movement.migration.enabled:false}") boolean enabled) {
+        this.template = template;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (enabled) {
+            migrateAmounts().subscribe(
+                    count -> logger.info("Montos migrados a centimos: {}", count),
+                    e -> logger.error("Fallo la migracion de montos", e));
+            backfillTimestamps().subscribe(
+                    count -> logger.info("Movimientos con timestamp completado: {}", count),
+                    e -> logger.error("Fallo la migracion de timestamps", e));
+        }
+    }
+
+    /**
+     * Agrega amountMinor a los movimientos que solo tienen el monto decimal.
+     */
+    public Mono<Long> migrateAmounts() {
+        Query pending = Query.query(Criteria.where("amountMinor").exists(false));
+        return template.find(pending, MovementDao.class)
+                .flatMap(md -> template.updateFirst(
+                Query.query(Criteria.where("_id").is(md.getMovement())),
+                Update.update("amountMinor", Money.toMinor(md.getAmount())),
+                MovementDao.class), 16)
+                .count();
+    }
+
+    /**
+     * Calcula el timestamp de los movimientos que solo tienen la fecha y hora
+     * en texto (dd-MM-yyyy HH:mm:ss, hora de Bogota). Los que tienen una
+     * fecha invalida quedan sin timestamp y se registran en el log; los que
+     * una version anterior dejo en 0 se vuelven a intentar.
+     */
+    public Mono<Long> backfillTimestamps() {
+        Query pending = Query.query(Criteria.where("timestamp").exists(false));
+        return template.updateMulti(Query.query(Criteria.where("timestamp").is(0L)), new Update().unset("timestamp"), MovementDao.class)
+                .thenMany(template.find(pending, MovementDao.class))
+                .flatMap(md -> Mono.justOrEmpty(timestampOf(md)).flatMap(timestamp -> template.updateFirst(
+                Query.query(Criteria.where("_id").is(md.getMovement())),
+                Update.update("timestamp", timestamp),
+                MovementDao.class)), 16)
+                .count();
+    }
+
+    private Optional<Long> timestampOf(MovementDao md) {
+        try {
+            return Optional.of(LocalDateTime.parse(md.getDate() + " " + md.getTime(), FORMAT_DATE_TIME)
+                    .atZone(ZONE).toInstant().toEpochMilli());
+        } catch (RuntimeException e) {
+            logger.warn("Fecha invalida en el movimiento {}: {} {}, queda sin timestamp", md.getMovement(), md.getDate(), md.getTime());
+            return Optional.empty();
+        }
+    }
+
+}
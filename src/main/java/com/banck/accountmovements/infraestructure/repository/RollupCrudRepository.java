@@ -0,0 +1,157 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.aplication.model.RollupRepository;
+import com.banck.accountmovements.infraestructure.model.dao.BalanceRollupDao;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ *
+ * @author jonavcar
+ */
+public class RollupCrudRepository implements RollupRepository {
+
+    static final String DAILY = "D";
+    static final String MONTHLY = "M";
+    static final ZoneId ZONE = ZoneId.of("America/Bogota");
+
+    /**
+     * Dia yyyyMMdd del movimiento en la zona de la cuenta; los documentos sin
+     * timestamp caen en el dia de epoch, como al leerlos uno por uno.
+     */
+    static final AggregationExpression DAY = context -> new Document("$dateToString", new Document("format", "%Y%m%d")
+            .append("date", new Document("$toDate", new Document("$ifNull", List.of("$timestamp", 0L))))
+            .append("timezone", ZONE.getId()));
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Override
+    public Mono<Void> record(String account, long timestamp, long netMinor, long count) {
+        int day = dayOf(timestamp);
+        return upsert(account, DAILY, day, netMinor, count)
+                .then(upsert(account, MONTHLY, day / 100, netMinor, count));
+    }
+
+    private Mono<Void> upsert(String account, String period, int day, long netMinor, long count) {
+        Update update = new Update()
+                .inc("netMinor", netMinor)
+                .inc("count", count)
+                .setOnInsert("account", account)
+                .setOnInsert("period", period)
+                .setOnInsert("day", day);
+        return template.upsert(byId(idOf(account, period, day)), update, BalanceRollupDao.class).then();
+    }
+
+    /**
+     * Suma los meses completos anteriores y los dias previos del mismo mes:
+     * como los cierres solo se incrementan, el resultado no depende del orden
+     * en que se registraron los movimientos.
+     */
+    @Override
+    public Mono<Long> closingBefore(String account, long timestamp) {
+        int day = dayOf(timestamp);
+        int month = day / 100;
+        Criteria months = Criteria.where("account").is(account).and("period").is(MONTHLY).and("day").lt(month);
+        Criteria days = Criteria.where("account").is(account).and("period").is(DAILY).and("day").gte(month * 100).lt(day);
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(new Criteria().orOperator(months, days)),
+                Aggregation.group().sum("netMinor").as("closingMinor"));
+        return template.aggregate(aggregation, template.getCollectionName(BalanceRollupDao.class), Document.class)
+                .next()
+                .map(d -> d.get("closingMinor", Number.class).longValue())
+                .defaultIfEmpty(0L);
+    }
+
+    @Override
+    public Mono<Long> countInMonth(String account, long timestamp) {
+        return template.findById(idOf(account, MONTHLY, dayOf(timestamp) / 100), BalanceRollupDao.class)
+                .map(BalanceRollupDao::getCount)
+                .defaultIfEmpty(0L);
+    }
+
+    /**
+     * Agrupa por dia en Mongo los movimientos de la cuenta, de ambas
+     * colecciones y con los montos sin migrar, reemplaza cada cierre sin
+     * borrarlo antes y luego elimina los que ya no corresponden a ningun dia.
+     */
+    @Override
+    public Mono<Long> rebuild(String account) {
+        Criteria owner = Criteria.where("account").is(account);
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(owner),
+                UnionWithOperation.unionWith(MovementArchiver.COLLECTION).pipeline(Aggregation.match(owner)),
+                Aggregation.project().and(DAY).as("day").and(MovementAmounts.AMOUNT_MINOR).as("amountMinor"),
+                Aggregation.group("day").sum("amountMinor").as("netMinor").count().as("count"));
+        return template.aggregate(aggregation, template.getCollectionName(MovementDao.class), Document.class)
+                .collectList()
+                .flatMap(days -> {
+                    Map<String, BalanceRollupDao> rollups = new LinkedHashMap<>();
+                    for (Document d : days) {
+                        int day = Integer.parseInt(d.getString("_id"));
+                        long netMinor = d.get("netMinor", Number.class).longValue();
+                        long count = d.get("count", Number.class).longValue();
+                        add(rollups, account, DAILY, day, netMinor, count);
+                        add(rollups, account, MONTHLY, day / 100, netMinor, count);
+                    }
+                    return Flux.fromIterable(rollups.values())
+                            .concatMap(this::replace)
+                            .then(template.remove(Query.query(Criteria.where("account").is(account)
+                                    .and("_id").nin(rollups.keySet())), BalanceRollupDao.class))
+                            .thenReturn((long) rollups.size());
+                });
+    }
+
+    private void add(Map<String, BalanceRollupDao> rollups, String account, String period, int day, long netMinor, long count) {
+        BalanceRollupDao r = rollups.computeIfAbsent(idOf(account, period, day), id -> {
+            BalanceRollupDao created = new BalanceRollupDao();
+            created.setId(id);
+            created.setAccount(account);
+            created.setPeriod(period);
+            created.setDay(day);
+            return created;
+        });
+        r.setNetMinor(r.getNetMinor() + netMinor);
+        r.setCount(r.getCount() + count);
+    }
+
+    private Mono<Void> replace(BalanceRollupDao r) {
+        Update update = new Update()
+                .set("netMinor", r.getNetMinor())
+                .set("count", r.getCount())
+                .setOnInsert("account", r.getAccount())
+                .setOnInsert("period", r.getPeriod())
+                .setOnInsert("day", r.getDay());
+        return template.upsert(byId(r.getId()), update, BalanceRollupDao.class).then();
+    }
+
+    private Query byId(String id) {
+        return Query.query(Criteria.where("_id").is(id));
+    }
+
+    private String idOf(String account, String period, int day) {
+        return account + ":" + period + ":" + day;
+    }
+
+    private int dayOf(long timestamp) {
+        LocalDate date = Instant.ofEpochMilli(timestamp).atZone(ZONE).toLocalDate();
+        return date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+}
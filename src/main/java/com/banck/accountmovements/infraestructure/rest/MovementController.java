@@ -1,7 +1,18 @@
 package com.banck.accountmovements.infraestructure.rest;
 
 import com.banck.accountmovements.aplication.AccountOperations;
+import com.banck.accountmovements.aplication.BalanceOperations;
+import com.banck.accountmovements.aplication.IdempotencyOperations;
+import com.banck.accountmovements.aplication.LimitOperations;
+import com.banck.accountmovements.domain.Balance;
 import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.domain.MovementQuery;
+import com.banck.accountmovements.domain.MovementResult;
+import com.banck.accountmovements.domain.MovementSummary;
+import com.banck.accountmovements.domain.Statement;
+import com.banck.accountmovements.domain.StoredResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -9,19 +20,42 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import java.time.LocalDateTime;
+import java.time.LocalDate;
 import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Random;
+import com.banck.accountmovements.aplication.MovementLane;
 import com.banck.accountmovements.aplication.MovementOperations;
 import com.banck.accountmovements.utils.Concept;
+import com.banck.accountmovements.utils.MovementFields;
+import com.banck.accountmovements.utils.MovementIdGenerator;
+import com.banck.accountmovements.utils.MovementStages;
 import com.banck.accountmovements.utils.MovementType;
+import com.banck.accountmovements.utils.MovementValidator;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
 /**
@@ -33,15 +67,42 @@ import org.springframework.http.ResponseEntity;
 @RequiredArgsConstructor
 public class MovementController {
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String INSUFFICIENT_BALANCE = "El movimiento a efectuar sobrepasa el saldo disponible.";
+    static final String GROUP_FAILED = "No se pudo registrar el movimiento, intente nuevamente.";
+
+    Logger logger = LoggerFactory.getLogger(MovementController.class);
+
     DateTimeFormatter formatDate = DateTimeFormatter.ofPattern("dd-MM-yyyy");
     DateTimeFormatter formatTime = DateTimeFormatter.ofPattern("HH:mm:ss");
-    LocalDateTime dateTime = LocalDateTime.now(ZoneId.of("America/Bogota"));
+    ZoneId zone = ZoneId.of("America/Bogota");
     private final MovementOperations operations;
     private final AccountOperations accountOperations;
-
-    @GetMapping
-    public Flux<Movement> listAll() {
-        return operations.list();
+    private final BalanceOperations balanceOperations;
+    private final MovementLane movementLane;
+    private final MovementIdGenerator movementIdGenerator;
+    private final IdempotencyOperations idempotencyOperations;
+    private final MeterRegistry registry;
+    private final MovementStages stages;
+    private final LimitOperations limitOperations;
+
+    @Value("${movement.bulk.chunk-size:500}")
+    int bulkChunkSize;
+
+    @Value("${movement.page.default-size:50}")
+    int defaultPageSize;
+
+    @Value("${movement.page.max-size:500}")
+    int maxPageSize;
+
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<?> listAll(@RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "from", required = false) String from,
+            @RequestParam(name = "to", required = false) String to,
+            @RequestParam(name = "fields", required = false) String fields) {
+        MovementQuery query = pageQuery(size, cursor, from, to, fields);
+        return timedList("list", project(query == null ? operations.list() : operations.list(query), query));
     }
 
     @GetMapping("/{id}")
@@ -49,226 +110,412 @@ public class MovementController {
         return operations.get(id);
     }
 
-    @GetMapping("/customer/{id}/list")
-    public Flux<Movement> listByCustomer(@PathVariable("id") String id) {
-        return operations.listByCustomer(id);
+    /**
+     * Sin parametros devuelve todo el historial. Con size, cursor, from o to
+     * devuelve una pagina del mas reciente al mas antiguo; la siguiente pagina
+     * se pide con cursor=timestamp:movement del ultimo elemento recibido. Con
+     * fields=amount,date,concept solo se devuelven esos campos.
+     */
+    @GetMapping(value = "/customer/{id}/list", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<?> listByCustomer(@PathVariable("id") String id,
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "from", required = false) String from,
+            @RequestParam(name = "to", required = false) String to,
+            @RequestParam(name = "fields", required = false) String fields) {
+        MovementQuery query = pageQuery(size, cursor, from, to, fields);
+        return timedList("listByCustomer", project(query == null ? operations.listByCustomer(id) : operations.listByCustomer(id, query), query));
     }
 
-    @GetMapping("/account/{id}/list")
-    public Flux<Movement> listByAccount(@PathVariable("id") String id) {
-        return operations.listByAccount(id);
+    @GetMapping(value = "/account/{id}/list", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<?> listByAccount(@PathVariable("id") String id,
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "from", required = false) String from,
+            @RequestParam(name = "to", required = false) String to,
+            @RequestParam(name = "fields", required = false) String fields) {
+        MovementQuery query = pageQuery(size, cursor, from, to, fields);
+        return timedList("listByAccount", project(query == null ? operations.listByAccount(id) : operations.listByAccount(id, query), query));
     }
 
-    @GetMapping("/customer-account/{customer}/{account}/list")
-    public Flux<Movement> listByCustomerAndAccount(@PathVariable("customer") String customer, @PathVariable("account") String account) {
-        return operations.listByCustomerAndAccount(customer, account);
+    @GetMapping("/account/{id}/balance")
+    public Mono<Balance> balanceByAccount(@PathVariable("id") String id) {
+        return balanceOperations.get(id);
     }
 
-    @PostMapping
-    public Mono<ResponseEntity> create(@RequestBody Movement rqMovement) {
-        rqMovement.setMovement(rqMovement.getCustomer() + "-" + getRandomNumberString());
-        rqMovement.setDate(dateTime.format(formatDate));
-        rqMovement.setTime(dateTime.format(formatTime));
-        rqMovement.setCorrect(true);
-        return Mono.just(rqMovement).flatMap(movement -> {
-            String msgConceptos = ""
-                    + "Deposito = {\"concept\": \"DP\"}\n"
-                    + "Retiro = {\"concept\": \"RT\"}";
-
-            if (Optional.ofNullable(movement.getConcept()).isEmpty()) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar Concepto, Ejemplo:\n" + msgConceptos));
-            }
-
-            boolean isConcept = false;
-            for (Concept tc : Concept.values()) {
-                if (movement.getConcept().equals(tc.value)) {
-                    isConcept = true;
-                }
-            }
+    @GetMapping("/account/{id}/summary")
+    public Flux<MovementSummary> summaryByAccount(@PathVariable("id") String id) {
+        return operations.summaryByAccount(id);
+    }
 
-            if (!isConcept) {
-                return Mono.just(ResponseEntity.ok("Los codigos de Concepto son: \n" + msgConceptos));
-            }
+    @PostMapping("/balance/rebuild")
+    public Flux<Balance> rebuildBalances() {
+        return balanceOperations.rebuild();
+    }
 
-            if (Optional.ofNullable(movement.getCustomer()).isEmpty()) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar su Identificacion, Ejemplo: { \"customer\": \"78345212\" }"));
-            }
+    @GetMapping("/account/{id}/statement")
+    public Mono<Statement> statement(@PathVariable("id") String id,
+            @RequestParam(name = "from") String from,
+            @RequestParam(name = "to") String to) {
+        MovementQuery range = pageQuery(null, null, from, to, null);
+        return balanceOperations.statement(id, range.getFromTimestamp(), range.getToTimestamp()).map(s -> {
+            s.setFrom(from);
+            s.setTo(to);
+            return s;
+        });
+    }
 
-            if (Optional.ofNullable(movement.getAccount()).isEmpty()) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar la cuenta, Ejemplo: { \"account\": \"78345212-653\" }"));
-            }
+    @PostMapping("/rollup/rebuild")
+    public Mono<Long> rebuildRollups() {
+        return balanceOperations.rebuildRollups();
+    }
 
-            if (Optional.ofNullable(movement.getAmount()).isEmpty() || movement.getAmount() == 0) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar el monto diferente de cero, Ejemplo: { \"amount\": \"300.50\" }"));
-            }
+    @GetMapping(value = "/customer-account/{customer}/{account}/list", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<?> listByCustomerAndAccount(@PathVariable("customer") String customer, @PathVariable("account") String account,
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "from", required = false) String from,
+            @RequestParam(name = "to", required = false) String to,
+            @RequestParam(name = "fields", required = false) String fields) {
+        MovementQuery query = pageQuery(size, cursor, from, to, fields);
+        return timedList("listByCustomerAndAccount", project(query == null
+                ? operations.listByCustomerAndAccount(customer, account)
+                : operations.listByCustomerAndAccount(customer, account, query), query));
+    }
 
-            if (Concept.CHARGE.equals(movement.getConcept())) {
-                if (movement.getAmount() > 0) {
-                    movement.setAmount(-1 * movement.getAmount());
-                }
+    @PostMapping
+    public Mono<ResponseEntity> create(@RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody Movement rqMovement) {
+        return timed("create", idempotent("create", idempotencyKey, rqMovement, () -> createMovement(rqMovement)));
+    }
 
-                movement.setMovementType(MovementType.CHARGE.value);
-                movement.setObservations("Retiro por la suma de " + movement.getAmount());
+    private Mono<ResponseEntity> createMovement(Movement rqMovement) {
+        stampMovement(rqMovement);
+        return stages.operation("create", Mono.just(rqMovement).flatMap(movement -> {
+            Optional<String> error = stages.record("create", "validation", movement.getAccount(), () -> prepareMovement(movement));
+            if (error.isPresent()) {
+                return Mono.just(ResponseEntity.ok(error.get()));
             }
 
-            if (Concept.PAYMENT.equals(movement.getConcept())) {
-                if (movement.getAmount() < 0) {
-                    movement.setAmount(-1 * movement.getAmount());
+            return limitOperations.limit(movement.getAccount(), movement.getTimestamp()).flatMap(accountLimit -> movementLane.execute(movement.getAccount(), () -> limitOperations.check(accountLimit, 1).flatMap(limit -> {
+                if (limit.isPresent()) {
+                    return Mono.just(ResponseEntity.ok(limit.get()));
                 }
-                movement.setMovementType(MovementType.PAYMENT.value);
-                movement.setObservations("Deposito por la suma de " + movement.getAmount());
-            }
+                return stages.time("balance", movement.getAccount(), balanceOperations.available(movement.getAccount())).flatMap(balance -> {
+                    if ((balance + movement.getAmountMinor()) < 0) {
+                        return Mono.just(ResponseEntity.ok(INSUFFICIENT_BALANCE));
+                    } else {
+                        movement.setTransferAccount("");
+                        movement.setTransferCustomer("");
+                        return operations.create(movement).flatMap(mCG -> {
+                            return Mono.just(ResponseEntity.ok(mCG));
+                        });
+                    }
+                });
+            })));
+        }));
+    }
 
-            return operations.listByAccount(movement.getAccount()).collect(Collectors.summingDouble(ui -> ui.getAmount())).flatMap(balance -> {
-                if ((balance + movement.getAmount()) < 0) {
-                    return Mono.just(ResponseEntity.ok("El movimiento a efectuar sobrepasa el saldo disponible."));
+    @PostMapping(value = "/bulk",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovementResult> createBulk(@RequestBody Flux<Movement> rqMovements) {
+        return timedList("createBulk", rqMovements.buffer(bulkChunkSize).concatMap(chunk -> {
+            List<MovementResult> rejected = new ArrayList<>();
+            // Por cuenta y mes, porque el limite mensual se cuenta por mes.
+            Map<String, List<Movement>> byAccount = new LinkedHashMap<>();
+            for (Movement movement : chunk) {
+                stampMovement(movement);
+                Optional<String> error = prepareMovement(movement);
+                if (error.isPresent()) {
+                    rejected.add(MovementResult.rejected(movement, error.get()));
                 } else {
                     movement.setTransferAccount("");
                     movement.setTransferCustomer("");
-                    return operations.create(movement).flatMap(mCG -> {
-                        return Mono.just(ResponseEntity.ok(mCG));
-                    });
+                    byAccount.computeIfAbsent(movement.getAccount() + ":" + movement.getDate().substring(3),
+                            group -> new ArrayList<>()).add(movement);
                 }
+            }
+            return Flux.fromIterable(rejected)
+                    .concatWith(Flux.fromIterable(byAccount.values()).flatMap(this::createAccountGroup));
+        }).doOnNext(result -> registry.counter("movement.bulk.records",
+                "outcome", result.isAccepted() ? "accepted" : "rejected").increment()));
+    }
+
+    /**
+     * Consulta los limites y el saldo una sola vez para todos los movimientos
+     * de la cuenta y el mes dentro del bloque y guarda los aceptados en una sola
+     * escritura. La cuenta se consulta antes de entrar a su carril; dentro
+     * solo se leen el cierre del mes y el saldo. Si el grupo falla, sus
+     * movimientos que no quedaron guardados se devuelven rechazados y el
+     * resto del bloque continua.
+     */
+    private Flux<MovementResult> createAccountGroup(List<Movement> movements) {
+        String account = movements.get(0).getAccount();
+        return limitOperations.limit(account, movements.get(0).getTimestamp()).flatMap(accountLimit -> movementLane.execute(account, () -> limitOperations.check(accountLimit, movements.size()).flatMap(limit -> {
+            if (limit.isPresent()) {
+                return Mono.just(movements.stream()
+                        .map(movement -> MovementResult.rejected(movement, limit.get()))
+                        .collect(Collectors.toList()));
+            }
+            return balanceOperations.available(account).flatMap(balance -> {
+                List<Movement> accepted = new ArrayList<>();
+                List<MovementResult> rejected = new ArrayList<>();
+                long available = balance;
+                for (Movement movement : movements) {
+                    if ((available + movement.getAmountMinor()) < 0) {
+                        rejected.add(MovementResult.rejected(movement, INSUFFICIENT_BALANCE));
+                    } else {
+                        available += movement.getAmountMinor();
+                        accepted.add(movement);
+                    }
+                }
+                return operations.createAll(accepted).collectList().map(saved -> {
+                    // Sin transacciones un lote que fallo a medias solo devuelve lo guardado.
+                    Set<String> ids = saved.stream().map(Movement::getMovement).collect(Collectors.toSet());
+                    List<MovementResult> results = new ArrayList<>(movements.size());
+                    saved.forEach(movement -> results.add(MovementResult.accepted(movement)));
+                    accepted.stream()
+                            .filter(movement -> !ids.contains(movement.getMovement()))
+                            .forEach(movement -> results.add(MovementResult.rejected(movement, GROUP_FAILED)));
+                    results.addAll(rejected);
+                    return results;
+                });
             });
-        });
+        }))).onErrorResume(e -> {
+            logger.error("Fallo el grupo de " + movements.size() + " movimientos de la cuenta " + account, e);
+            return Mono.just(movements.stream()
+                    .map(movement -> MovementResult.rejected(movement, GROUP_FAILED))
+                    .collect(Collectors.toList()));
+        }).flatMapMany(Flux::fromIterable);
     }
 
-    @PostMapping("/transfer/other-account")
-    public Mono<ResponseEntity> transferOtherAccounts(@RequestBody Movement rqMovement) {
-        return Mono.just(rqMovement).flatMap(movement -> {
+    private void stampMovement(Movement movement) {
+        ZonedDateTime dateTime = ZonedDateTime.now(zone);
+        movement.setMovement(movementIdGenerator.next());
+        movement.setDate(dateTime.format(formatDate));
+        movement.setTime(dateTime.format(formatTime));
+        movement.setTimestamp(dateTime.toInstant().toEpochMilli());
+        movement.setCorrect(true);
+    }
 
-            if (Optional.ofNullable(movement.getCustomer()).isEmpty()) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar su Identificacion, Ejemplo: { \"customer\": \"78345212\" }"));
+    private MovementQuery pageQuery(Integer size, String cursor, String from, String to, String fields) {
+        Set<String> projection;
+        try {
+            projection = MovementFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    e.getMessage() + ". Campos disponibles: " + String.join(",", MovementFields.names()));
+        }
+        MovementQuery query = new MovementQuery();
+        query.setFields(projection);
+        if (size == null && cursor == null && from == null && to == null) {
+            return projection == null ? null : query;
+        }
+        query.setSize(Math.min(size == null ? defaultPageSize : Math.max(size, 1), maxPageSize));
+        try {
+            if (from != null) {
+                query.setFromTimestamp(LocalDate.parse(from, formatDate).atStartOfDay(zone).toInstant().toEpochMilli());
             }
-
-            if (Optional.ofNullable(movement.getAccount()).isEmpty()) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar la cuenta de Origen, Ejemplo: { \"account\": \"78345212-653\" }"));
+            if (to != null) {
+                query.setToTimestamp(LocalDate.parse(to, formatDate).plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
             }
-
-            if (Optional.ofNullable(movement.getTransferAccount()).isEmpty()) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar la cuenta de Destino, Ejemplo: { \"transferAccount\": \"78345212-653\" }"));
+            if (cursor != null) {
+                int separator = cursor.indexOf(':');
+                query.setAfterTimestamp(Long.parseLong(cursor.substring(0, separator)));
+                query.setAfterMovement(cursor.substring(separator + 1));
             }
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Parametros de pagina invalidos, Ejemplo: ?size=50&from=01-01-2022&to=31-01-2022&cursor=1641013200000:0000123456789012345");
+        }
+        return query;
+    }
 
-            if (Optional.ofNullable(movement.getTransferCustomer()).isEmpty()) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar Identificacion Beneficiario, Ejemplo: { \"transferCustomer\": \"78345212\" }"));
-            }
+    private Flux<?> project(Flux<Movement> movements, MovementQuery query) {
+        if (query == null || query.getFields() == null) {
+            return movements;
+        }
+        Set<String> fields = query.getFields();
+        return movements.map(movement -> MovementFields.project(movement, fields));
+    }
 
-            if (Optional.ofNullable(movement.getAmount()).isEmpty() || movement.getAmount() == 0) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar el monto diferente de cero, Ejemplo: { \"amount\": \"300.50\" }"));
+    /**
+     * Valida un deposito o retiro y completa su tipo, signo y observaciones.
+     * Devuelve el mensaje de error cuando el movimiento no es valido.
+     */
+    Optional<String> prepareMovement(Movement movement) {
+        Optional<String> error = MovementValidator.CREATE.validate(movement);
+        if (error.isPresent()) {
+            return error;
+        }
+
+        Concept concept = Concept.of(movement.getConcept());
+        if (concept == Concept.CHARGE) {
+            if (movement.getAmountMinor() > 0) {
+                movement.setAmountMinor(-1 * movement.getAmountMinor());
             }
 
-            movement.setConcept(Concept.TRANSFER.value);
+            movement.setMovementType(MovementType.CHARGE.value);
+            movement.setObservations("Retiro por la suma de " + movement.getAmount());
+        }
 
-            if (Concept.TRANSFER.equals(movement.getConcept())) {
-                if (movement.getAmount() > 0) {
-                    movement.setAmount(-1 * movement.getAmount());
-                }
+        if (concept == Concept.PAYMENT) {
+            if (movement.getAmountMinor() < 0) {
+                movement.setAmountMinor(-1 * movement.getAmountMinor());
+            }
+            movement.setMovementType(MovementType.PAYMENT.value);
+            movement.setObservations("Deposito por la suma de " + movement.getAmount());
+        }
+        return error;
+    }
 
-                movement.setMovementType(MovementType.CHARGE.value);
-                movement.setObservations("Transferencia a la cuenta " + movement.getTransferAccount() + " por la suma de " + movement.getAmount() * -1);
+    @PostMapping("/transfer/other-account")
+    public Mono<ResponseEntity> transferOtherAccounts(@RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody Movement rqMovement) {
+        return timed("transferOtherAccounts", idempotent("transfer-other-account", idempotencyKey, rqMovement, () -> Mono.just(rqMovement).flatMap(movement -> {
+            Optional<String> error = stages.record("transfer", "validation", movement.getAccount(), () -> prepareTransfer(movement, true));
+            if (error.isPresent()) {
+                return Mono.just(ResponseEntity.ok(error.get()));
             }
+            return transfer(movement);
+        })));
+    }
 
-            return operations.listByAccount(movement.getAccount()).collect(Collectors.summingDouble(ui -> ui.getAmount())).flatMap(balance -> {
-                if ((balance + movement.getAmount()) < 0) {
-                    return Mono.just(ResponseEntity.ok("El movimiento a efectuar sobrepasa el saldo disponible."));
-                } else {
+    @PostMapping("/transfer/my-account")
+    public Mono<ResponseEntity> transferMyAccounts(@RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody Movement rqMovement) {
+        return timed("transferMyAccounts", idempotent("transfer-my-account", idempotencyKey, rqMovement, () -> Mono.just(rqMovement).flatMap(movement -> {
+            Optional<String> error = stages.record("transfer", "validation", movement.getAccount(), () -> prepareTransfer(movement, false));
+            if (error.isPresent()) {
+                return Mono.just(ResponseEntity.ok(error.get()));
+            }
+            movement.setTransferCustomer(movement.getCustomer());
+            return transfer(movement);
+        })));
+    }
 
-                    rqMovement.setMovement(rqMovement.getCustomer() + "-" + getRandomNumberString());
-                    rqMovement.setDate(dateTime.format(formatDate));
-                    rqMovement.setTime(dateTime.format(formatTime));
-                    rqMovement.setCorrect(true);
-
-                    return operations.create(movement).flatMap(mCG -> {
-                        if (Concept.TRANSFER.equals(movement.getConcept())) {
-                            if (movement.getAmount() < 0) {
-                                movement.setAmount(-1 * movement.getAmount());
-                            }
-
-                            movement.setMovementType(MovementType.PAYMENT.value);
-                            movement.setObservations("Transferencia desde la cuenta " + mCG.getAccount() + " por la suma de " + movement.getAmount());
-                        }
-                        movement.setAccount(movement.getTransferAccount());
-                        movement.setCustomer(movement.getTransferCustomer());
-                        movement.setTransferAccount(mCG.getAccount());
-                        movement.setTransferCustomer(mCG.getCustomer());
-
-                        rqMovement.setMovement(movement.getCustomer() + "-" + getRandomNumberString());
-                        rqMovement.setDate(dateTime.format(formatDate));
-                        rqMovement.setTime(dateTime.format(formatTime));
-                        rqMovement.setCorrect(true);
-
-                        return operations.create(movement).flatMap(mAB -> {
-                            return Mono.just(ResponseEntity.ok(mCG));
-                        });
-                    });
-                }
-            });
+    /**
+     * Valida una transferencia; el beneficiario solo se exige entre cuentas
+     * de distintos clientes.
+     */
+    Optional<String> prepareTransfer(Movement movement, boolean otherCustomer) {
+        return (otherCustomer ? MovementValidator.TRANSFER_OTHER_ACCOUNT : MovementValidator.TRANSFER_MY_ACCOUNT).validate(movement);
+    }
+
+    private Mono<ResponseEntity> timed(String endpoint, Mono<ResponseEntity> response) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return response
+                    .doOnSuccess(r -> sample.stop(requestTimer(endpoint, outcomeOf(r))))
+                    .doOnError(e -> sample.stop(requestTimer(endpoint, "error")));
         });
     }
 
-    @PostMapping("/transfer/my-account")
-    public Mono<ResponseEntity> transferMyAccounts(@RequestBody Movement rqMovement) {
-        return Mono.just(rqMovement).flatMap(movement -> {
+    private <T> Flux<T> timedList(String endpoint, Flux<T> response) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return response
+                    .doOnComplete(() -> sample.stop(requestTimer(endpoint, "accepted")))
+                    .doOnError(e -> sample.stop(requestTimer(endpoint, "error")));
+        });
+    }
 
-            if (Optional.ofNullable(movement.getCustomer()).isEmpty()) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar su Identificacion, Ejemplo: { \"customer\": \"78345212\" }"));
-            }
+    private String outcomeOf(ResponseEntity response) {
+        if (response == null || response.getBody() instanceof Movement) {
+            return "accepted";
+        }
+        return INSUFFICIENT_BALANCE.equals(response.getBody()) ? "insufficient-balance" : "validation-rejected";
+    }
 
-            if (Optional.ofNullable(movement.getAccount()).isEmpty()) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar la cuenta de Origen, Ejemplo: { \"account\": \"78345212-653\" }"));
-            }
+    private Timer requestTimer(String endpoint, String outcome) {
+        return Timer.builder("movement.requests")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
 
-            if (Optional.ofNullable(movement.getTransferAccount()).isEmpty()) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar la cuenta de Destino, Ejemplo: { \"transferAccount\": \"78345212-653\" }"));
-            }
-            if (Optional.ofNullable(movement.getAmount()).isEmpty() || movement.getAmount() == 0) {
-                return Mono.just(ResponseEntity.ok("Debe ingresar el monto diferente de cero, Ejemplo: { \"amount\": \"300.50\" }"));
+    /**
+     * Sin Idempotency-Key la operacion se ejecuta normalmente; con clave, los
+     * reintentos con la misma solicitud reciben la respuesta original sin
+     * volver a ejecutarla. Una clave usada con otra solicitud, o cuya primera
+     * ejecucion sigue en curso, responde 409.
+     */
+    private Mono<ResponseEntity> idempotent(String operation, String key, Movement request, Supplier<Mono<ResponseEntity>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        // El hash se toma antes de ejecutar, porque la operacion completa el movimiento.
+        String requestHash = requestHash(request);
+        return idempotencyOperations.execute(operation + ":" + key, requestHash, () -> action.get().map(response -> {
+            StoredResponse stored = new StoredResponse();
+            if (response.getBody() instanceof Movement) {
+                stored.setMovement((Movement) response.getBody());
+            } else {
+                stored.setMessage(String.valueOf(response.getBody()));
             }
+            return stored;
+        })).<ResponseEntity>map(stored -> stored.getMovement() != null
+                ? ResponseEntity.ok(stored.getMovement())
+                : ResponseEntity.ok(stored.getMessage()))
+                .onErrorMap(IdempotencyOperations.ConflictException.class,
+                        e -> new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage()));
+    }
 
-            movement.setConcept(Concept.TRANSFER.value);
-
-            if (Concept.TRANSFER.equals(movement.getConcept())) {
-                if (movement.getAmount() > 0) {
-                    movement.setAmount(-1 * movement.getAmount());
-                }
+    private String requestHash(Movement request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(String.valueOf(request).getBytes(StandardCharsets.UTF_8));
+            return String.format("%064x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-                movement.setMovementType(MovementType.CHARGE.value);
-                movement.setObservations("Transferencia a la cuenta " + movement.getTransferAccount() + " por la suma de " + movement.getAmount() * -1);
+    /**
+     * Arma el cargo en la cuenta de origen y el abono en la de destino y los
+     * registra juntos, de modo que nunca queda uno sin el otro.
+     */
+    private Mono<ResponseEntity> transfer(Movement movement) {
+        movement.setConcept(Concept.TRANSFER.value);
+        if (movement.getAmountMinor() > 0) {
+            movement.setAmountMinor(-1 * movement.getAmountMinor());
+        }
+        movement.setMovementType(MovementType.CHARGE.value);
+        movement.setObservations("Transferencia a la cuenta " + movement.getTransferAccount() + " por la suma de " + movement.getAmount() * -1);
+        stampMovement(movement);
+
+        // El abono tambien cuenta en el mes de la cuenta de destino, que debe
+        // existir, estar activa y admitirlo igual que la de origen.
+        return stages.operation("transfer", Mono.zip(limitOperations.limit(movement.getAccount(), movement.getTimestamp()),
+                limitOperations.limit(movement.getTransferAccount(), movement.getTimestamp()))
+                .flatMap(limits -> movementLane.execute(movement.getAccount(), movement.getTransferAccount(), () -> limitOperations.check(limits.getT1(), 1)
+                .zipWith(limitOperations.check(limits.getT2(), 1), (source, destination) -> source.isPresent() ? source : destination)
+                .flatMap(limit -> {
+            if (limit.isPresent()) {
+                return Mono.just(ResponseEntity.ok(limit.get()));
             }
-
-            return operations.listByAccount(movement.getAccount()).collect(Collectors.summingDouble(ui -> ui.getAmount())).flatMap(balance -> {
-                if ((balance + movement.getAmount()) < 0) {
-                    return Mono.just(ResponseEntity.ok("El movimiento a efectuar sobrepasa el saldo disponible."));
+            return stages.time("balance", movement.getAccount(), balanceOperations.available(movement.getAccount())).flatMap(balance -> {
+                if ((balance + movement.getAmountMinor()) < 0) {
+                    return Mono.just(ResponseEntity.ok(INSUFFICIENT_BALANCE));
                 } else {
-                    rqMovement.setTransferCustomer(rqMovement.getCustomer());
-                    rqMovement.setMovement(rqMovement.getCustomer() + "-" + getRandomNumberString());
-                    rqMovement.setDate(dateTime.format(formatDate));
-                    rqMovement.setTime(dateTime.format(formatTime));
-                    rqMovement.setCorrect(true);
-
-                    return operations.create(movement).flatMap(mCG -> {
-                        if (Concept.TRANSFER.equals(movement.getConcept())) {
-                            if (movement.getAmount() < 0) {
-                                movement.setAmount(-1 * movement.getAmount());
-                            }
-
-                            movement.setMovementType(MovementType.PAYMENT.value);
-                            movement.setObservations("Transferencia desde la cuenta " + mCG.getAccount() + " por la suma de " + movement.getAmount());
-                        }
-                        rqMovement.setAccount(mCG.getTransferAccount());
-                        rqMovement.setTransferAccount(mCG.getAccount());
-                        rqMovement.setMovement(movement.getCustomer() + "-" + getRandomNumberString());
-                        rqMovement.setDate(dateTime.format(formatDate));
-                        rqMovement.setTime(dateTime.format(formatTime));
-                        rqMovement.setCorrect(true);
-
-                        return operations.create(movement).flatMap(mAB -> {
-                            return Mono.just(ResponseEntity.ok(mCG));
-                        });
+                    Movement payment = new Movement();
+                    payment.setMovementType(MovementType.PAYMENT.value);
+                    payment.setAccount(movement.getTransferAccount());
+                    payment.setCustomer(movement.getTransferCustomer());
+                    payment.setTransferAccount(movement.getAccount());
+                    payment.setTransferCustomer(movement.getCustomer());
+                    payment.setAmountMinor(-1 * movement.getAmountMinor());
+                    payment.setConcept(movement.getConcept());
+                    payment.setObservations("Transferencia desde la cuenta " + movement.getAccount() + " por la suma de " + payment.getAmount());
+                    stampMovement(payment);
+
+                    return operations.transfer(movement, payment).flatMap(mCG -> {
+                        return Mono.just(ResponseEntity.ok(mCG));
                     });
                 }
             });
-        });
+        }))));
     }
 
     @PutMapping("/{id}")
@@ -280,10 +527,4 @@ public class MovementController {
     public void delete(@PathVariable("id") String id) {
         operations.delete(id);
     }
-
-    public static String getRandomNumberString() {
-        Random rnd = new Random();
-        int number = rnd.nextInt(999999);
-        return String.format("%06d", number);
-    }
 }
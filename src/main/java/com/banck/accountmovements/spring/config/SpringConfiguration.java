@@ -1,9 +1,30 @@
 package com.banck.accountmovements.spring.config;
 
+import com.banck.accountmovements.aplication.model.BalanceRepository;
+import com.banck.accountmovements.aplication.model.IdempotencyRepository;
+import com.banck.accountmovements.aplication.model.RollupRepository;
+import com.banck.accountmovements.infraestructure.repository.BalanceCrudRepository;
+import com.banck.accountmovements.infraestructure.repository.IdempotencyCrudRepository;
 import com.banck.accountmovements.infraestructure.repository.MovementCrudRepository;
+import com.banck.accountmovements.infraestructure.repository.RollupCrudRepository;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import com.banck.accountmovements.aplication.model.MovementRepository;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoTransactionManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 /**
  *
@@ -16,4 +37,64 @@ public class SpringConfiguration {
     public MovementRepository movementRepository() {
         return new MovementCrudRepository();
     }
+
+    @Bean
+    public BalanceRepository balanceRepository() {
+        return new BalanceCrudRepository();
+    }
+
+    @Bean
+    public RollupRepository rollupRepository() {
+        return new RollupCrudRepository();
+    }
+
+    @Bean
+    public IdempotencyRepository idempotencyRepository() {
+        return new IdempotencyCrudRepository();
+    }
+
+    /**
+     * Las transacciones de Mongo requieren un replica set; con
+     * movement.transfer.transactional=false ambos movimientos de una
+     * transferencia se escriben en un mismo insert sin transaccion y, si falla
+     * la actualizacion de un saldo, se reconstruyen los de las dos cuentas.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "movement.transfer.transactional", havingValue = "true", matchIfMissing = true)
+    public ReactiveMongoTransactionManager transactionManager(ReactiveMongoDatabaseFactory factory) {
+        return new ReactiveMongoTransactionManager(factory);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "movement.transfer.transactional", havingValue = "true", matchIfMissing = true)
+    public TransactionalOperator transactionalOperator(ReactiveMongoTransactionManager transactionManager) {
+        return TransactionalOperator.create(transactionManager);
+    }
+
+    /**
+     * Cliente unico hacia el microservicio de cuentas, con un pool de
+     * conexiones compartido por todas las consultas.
+     */
+    @Bean
+    public WebClient accountWebClient(@Value("${account.service.url:http://localhost:8081}") String url,
+            @Value("${account.service.pool.max-connections:100}") int maxConnections) {
+        ConnectionProvider provider = ConnectionProvider.builder("account-service")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofSeconds(3))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .build();
+
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 3000)
+                .doOnConnected(connection
+                        -> connection.addHandlerLast(new ReadTimeoutHandler(3))
+                        .addHandlerLast(new WriteTimeoutHandler(3)));
+
+        return WebClient.builder()
+                .baseUrl(url)
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
 }
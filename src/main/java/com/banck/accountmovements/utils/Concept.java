@@ -4,6 +4,9 @@
  */
 package com.banck.accountmovements.utils;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  *
  * @author jonavcar
@@ -27,8 +30,25 @@ public enum Concept {
         }
     };
 
+    private static final Map<String, Concept> BY_VALUE = new HashMap<>();
+
+    static {
+        for (Concept c : values()) {
+            BY_VALUE.put(c.value, c);
+        }
+    }
+
     public final String value;
 
+    /**
+     * Concepto del codigo que llega en cada deposito o retiro (RT, DP, TF), o
+     * null si no es uno de ellos. Lo usan la validacion y el controlador en
+     * cada solicitud, por eso se busca en un mapa y no en values().
+     */
+    public static Concept of(String value) {
+        return value == null ? null : BY_VALUE.get(value);
+    }
+
     public boolean equals(String movementType) {
         return value.equals(movementType);
     }
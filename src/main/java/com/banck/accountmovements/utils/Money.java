@@ -0,0 +1,24 @@
+package com.banck.accountmovements.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Los montos se guardan y se suman como centimos en un long; el valor decimal
+ * solo se usa al leer y escribir JSON.
+ *
+ * @author jonavcar
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    public static long toMinor(double amount) {
+        return BigDecimal.valueOf(amount).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static double toMajor(long amountMinor) {
+        return amountMinor / 100.0;
+    }
+}
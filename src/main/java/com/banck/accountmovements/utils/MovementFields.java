@@ -0,0 +1,86 @@
+package com.banck.accountmovements.utils;
+
+import com.banck.accountmovements.domain.Movement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Campos que se pueden pedir con fields= en los listados de movimientos: su
+ * columna en la coleccion movement y como leerlos del movimiento.
+ *
+ * @author jonavcar
+ */
+public final class MovementFields {
+
+    private static final Map<String, String[]> COLUMNS = new LinkedHashMap<>();
+    private static final Map<String, Function<Movement, Object>> VALUES = new LinkedHashMap<>();
+
+    static {
+        field("movement", Movement::getMovement, "_id");
+        field("movementType", Movement::getMovementType, "movementType");
+        field("account", Movement::getAccount, "account");
+        field("customer", Movement::getCustomer, "customer");
+        field("transferAccount", Movement::getTransferAccount, "transferAccount");
+        field("transferCustomer", Movement::getTransferCustomer, "transferCustomer");
+        // Los documentos no migrados solo tienen el monto decimal.
+        field("amount", Movement::getAmount, "amount", "amountMinor");
+        field("concept", Movement::getConcept, "concept");
+        field("observations", Movement::getObservations, "observations");
+        field("date", Movement::getDate, "date");
+        field("time", Movement::getTime, "time");
+        field("timestamp", Movement::getTimestamp, "timestamp");
+        field("correct", Movement::isCorrect, "correct");
+    }
+
+    private MovementFields() {
+    }
+
+    private static void field(String name, Function<Movement, Object> value, String... columns) {
+        COLUMNS.put(name, columns);
+        VALUES.put(name, value);
+    }
+
+    /**
+     * Interpreta una lista separada por comas; devuelve null si esta vacia.
+     *
+     * @throws IllegalArgumentException si algun campo no existe
+     */
+    public static Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!COLUMNS.containsKey(name)) {
+                throw new IllegalArgumentException("Campo desconocido: " + name);
+            }
+            parsed.add(name);
+        }
+        return Collections.unmodifiableSet(parsed);
+    }
+
+    public static String[] columns(String field) {
+        return COLUMNS.get(field);
+    }
+
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(COLUMNS.keySet());
+    }
+
+    /**
+     * Arma la respuesta reducida con solo los campos pedidos.
+     */
+    public static Map<String, Object> project(Movement movement, Set<String> fields) {
+        Map<String, Object> projected = new LinkedHashMap<>(fields.size() * 2);
+        for (String field : fields) {
+            projected.put(field, VALUES.get(field).apply(movement));
+        }
+        return projected;
+    }
+
+}
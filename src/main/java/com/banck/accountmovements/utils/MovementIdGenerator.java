@@ -0,0 +1,72 @@
+package com.banck.accountmovements.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Genera identificadores de movimiento unicos y ordenados por fecha de
+ * creacion: 41 bits de milisegundos desde 2021-01-01, 10 bits de nodo y 12
+ * bits de secuencia. Se representan como texto de 19 digitos para que el
+ * orden alfabetico coincida con el numerico. Cada instancia debe tener su
+ * propio movement.id.node (0 a 1023); sin el la aplicacion no inicia, porque
+ * dos instancias con el mismo nodo pueden generar el mismo identificador.
+ *
+ * @author jonavcar
+ */
+@Component
+public class MovementIdGenerator {
+
+    static final long EPOCH = 1609459200000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    static final int DIGITS = 19;
+
+    Logger logger = LoggerFactory.getLogger(MovementIdGenerator.class);
+
+    private final long node;
+    // Ultimo milisegundo usado y su secuencia: (milisegundo << SEQUENCE_BITS) | secuencia.
+    private final AtomicLong state = new AtomicLong();
+
+    public MovementIdGenerator(@Value("${movement.id.node:-1}") long node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalStateException("movement.id.node debe ser un numero de 0 a " + MAX_NODE
+                    + " distinto en cada instancia; valor recibido: " + node);
+        }
+        this.node = node;
+        logger.info("Nodo del generador de movimientos: {}", this.node);
+    }
+
+    public long nextId() {
+        while (true) {
+            long last = state.get();
+            long lastMillis = last >>> SEQUENCE_BITS;
+            // Si el reloj retrocede se sigue usando el ultimo milisegundo.
+            long millis = Math.max(System.currentTimeMillis() - EPOCH, lastMillis);
+            long next;
+            if (millis == lastMillis) {
+                next = (last & SEQUENCE_MASK) == SEQUENCE_MASK ? (lastMillis + 1) << SEQUENCE_BITS : last + 1;
+            } else {
+                next = millis << SEQUENCE_BITS;
+            }
+            if (state.compareAndSet(last, next)) {
+                return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS))
+                        | (node << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    public String next() {
+        String id = Long.toString(nextId());
+        StringBuilder sb = new StringBuilder(DIGITS);
+        for (int i = id.length(); i < DIGITS; i++) {
+            sb.append('0');
+        }
+        return sb.append(id).toString();
+    }
+}
@@ -0,0 +1,35 @@
+package com.banck.accountmovements.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de Java Flight Recorder con la duracion de una etapa del registro
+ * de un movimiento o de una transferencia.
+ *
+ * @author jonavcar
+ */
+@Name(MovementStageEvent.NAME)
+@Label("Movement Stage")
+@Category("Account Movements")
+@Description("Duracion de una etapa del registro de un movimiento")
+@StackTrace(false)
+public class MovementStageEvent extends jdk.jfr.Event {
+
+    public static final String NAME = "com.banck.accountmovements.MovementStage";
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Stage")
+    public String stage;
+
+    @Label("Account")
+    public String account;
+
+    @Label("Documents Scanned")
+    public long scanned;
+}
@@ -0,0 +1,111 @@
+package com.banck.accountmovements.utils;
+
+import java.util.function.Supplier;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Emite un MovementStageEvent por cada etapa de create y de las
+ * transferencias. Los eventos solo se arman cuando movement.jfr.enabled esta
+ * activo y hay una grabacion de JFR que los pide; la propiedad se vuelve a
+ * leer cada vez que cambia la configuracion (/actuator/refresh).
+ *
+ * @author jonavcar
+ */
+@Component
+public class MovementStages {
+
+    static final String OPERATION = "movement.stage.operation";
+
+    private final Environment environment;
+    private volatile boolean enabled;
+
+    public MovementStages(Environment environment) {
+        this.environment = environment;
+        refresh();
+    }
+
+    @EventListener(EnvironmentChangeEvent.class)
+    public void refresh() {
+        enabled = environment.getProperty("movement.jfr.enabled", Boolean.class, true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Indica a las etapas de source a que operacion pertenecen.
+     */
+    public <T> Mono<T> operation(String operation, Mono<T> source) {
+        return source.contextWrite(context -> context.put(OPERATION, operation));
+    }
+
+    /**
+     * Mide una etapa sincrona, como la validacion.
+     */
+    public <T> T record(String operation, String stage, String account, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        MovementStageEvent event = new MovementStageEvent();
+        if (!event.isEnabled()) {
+            return action.get();
+        }
+        event.begin();
+        try {
+            return action.get();
+        } finally {
+            commit(event, operation, stage, account);
+        }
+    }
+
+    /**
+     * Mide una etapa desde la suscripcion hasta que source termina.
+     */
+    public <T> Mono<T> time(String stage, String account, Mono<T> source) {
+        return Mono.deferContextual(context -> {
+            if (!enabled) {
+                return source;
+            }
+            MovementStageEvent event = new MovementStageEvent();
+            if (!event.isEnabled()) {
+                return source;
+            }
+            String operation = context.getOrDefault(OPERATION, "");
+            event.begin();
+            return source
+                    .doFinally(signal -> commit(event, operation, stage, account))
+                    .contextWrite(c -> c.put(MovementStageEvent.class, event));
+        });
+    }
+
+    /**
+     * Suma documentos recorridos a la etapa en curso, si la hay.
+     */
+    public Mono<Void> scanned(long count) {
+        return Mono.deferContextual(context -> {
+            context.<MovementStageEvent>getOrEmpty(MovementStageEvent.class)
+                    .ifPresent(event -> event.scanned += count);
+            return Mono.empty();
+        });
+    }
+
+    private void commit(MovementStageEvent event, String operation, String stage, String account) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.stage = stage;
+            event.account = account;
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.banck.accountmovements.utils;
+
+import com.banck.accountmovements.domain.Movement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Reglas de validacion de un movimiento, armadas una sola vez por tipo de
+ * operacion. Cada regla guarda su resultado de error ya construido, de modo
+ * que validar un movimiento correcto no crea objetos.
+ *
+ * @author jonavcar
+ */
+public final class MovementValidator {
+
+    static final String CONCEPTS = ""
+            + "Deposito = {\"concept\": \"DP\"}\n"
+            + "Retiro = {\"concept\": \"RT\"}";
+
+    public static final MovementValidator CREATE = new MovementValidator()
+            .require(m -> m.getConcept() != null, "Debe ingresar Concepto, Ejemplo:\n" + CONCEPTS)
+            .require(m -> Concept.of(m.getConcept()) != null, "Los codigos de Concepto son: \n" + CONCEPTS)
+            .require(m -> m.getCustomer() != null, "Debe ingresar su Identificacion, Ejemplo: { \"customer\": \"78345212\" }")
+            .require(m -> m.getAccount() != null, "Debe ingresar la cuenta, Ejemplo: { \"account\": \"78345212-653\" }")
+            .require(m -> m.getAmountMinor() != 0, "Debe ingresar el monto diferente de cero, Ejemplo: { \"amount\": \"300.50\" }")
+            .compile();
+
+    public static final MovementValidator TRANSFER_MY_ACCOUNT = new MovementValidator()
+            .require(m -> m.getCustomer() != null, "Debe ingresar su Identificacion, Ejemplo: { \"customer\": \"78345212\" }")
+            .require(m -> m.getAccount() != null, "Debe ingresar la cuenta de Origen, Ejemplo: { \"account\": \"78345212-653\" }")
+            .require(m -> m.getTransferAccount() != null, "Debe ingresar la cuenta de Destino, Ejemplo: { \"transferAccount\": \"78345212-653\" }")
+            .require(m -> m.getAmountMinor() != 0, "Debe ingresar el monto diferente de cero, Ejemplo: { \"amount\": \"300.50\" }")
+            .compile();
+
+    public static final MovementValidator TRANSFER_OTHER_ACCOUNT = new MovementValidator()
+            .require(m -> m.getCustomer() != null, "Debe ingresar su Identificacion, Ejemplo: { \"customer\": \"78345212\" }")
+            .require(m -> m.getAccount() != null, "Debe ingresar la cuenta de Origen, Ejemplo: { \"account\": \"78345212-653\" }")
+            .require(m -> m.getTransferAccount() != null, "Debe ingresar la cuenta de Destino, Ejemplo: { \"transferAccount\": \"78345212-653\" }")
+            .require(m -> m.getTransferCustomer() != null, "Debe ingresar Identificacion Beneficiario, Ejemplo: { \"transferCustomer\": \"78345212\" }")
+            .require(m -> m.getAmountMinor() != 0, "Debe ingresar el monto diferente de cero, Ejemplo: { \"amount\": \"300.50\" }")
+            .compile();
+
+    private final List<Predicate<Movement>> pending = new ArrayList<>();
+    private final List<Optional<String>> pendingErrors = new ArrayList<>();
+    private Predicate<Movement>[] rules;
+    private Optional<String>[] errors;
+
+    private MovementValidator() {
+    }
+
+    private MovementValidator require(Predicate<Movement> rule, String error) {
+        pending.add(rule);
+        pendingErrors.add(Optional.of(error));
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    private MovementValidator compile() {
+        rules = pending.toArray(new Predicate[0]);
+        errors = pendingErrors.toArray(new Optional[0]);
+        pending.clear();
+        pendingErrors.clear();
+        return this;
+    }
+
+    /**
+     * Devuelve el error de la primera regla que no se cumple.
+     */
+    public Optional<String> validate(Movement movement) {
+        for (int i = 0; i < rules.length; i++) {
+            if (!rules[i].test(movement)) {
+                return errors[i];
+            }
+        }
+        return Optional.empty();
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.banck.accountmovements;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Versions;
+import de.flapdoodle.embed.process.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import org.bson.Document;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Mono;
+
+/**
+ * Base de las pruebas contra Mongo: levanta una sola vez un mongod embebido
+ * como replica set de un nodo, para que las transacciones y los change
+ * streams funcionen igual que en produccion, y lo comparte entre todas las
+ * clases de prueba. El binario se descarga la primera vez en ~/.embedmongo.
+ *
+ * @author jonavcar
+ */
+@SpringBootTest(properties = {
+    "spring.cloud.config.enabled=false",
+    "eureka.client.enabled=false",
+    "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration",
+    "movement.id.node=1",
+    "movement.transactional=true"
+})
+public abstract class EmbeddedReplicaSet {
+
+    static final String VERSION = System.getProperty("mongo.version", "5.0.5");
+    static final String REPLICA_SET = "rs0";
+
+    private static String uri;
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", EmbeddedReplicaSet::uri);
+    }
+
+    public static synchronized String uri() {
+        if (uri == null) {
+            uri = start();
+        }
+        return uri;
+    }
+
+    private static String start() {
+        try {
+            int port = Network.getFreeServerPort();
+            MongodConfig config = MongodConfig.builder()
+                    .version(Versions.withFeatures(Version.of(VERSION)))
+                    .net(new Net(port, Network.localhostIsIPv6()))
+                    .replication(new Storage(null, REPLICA_SET, 0))
+                    .build();
+            MongodExecutable mongod = MongodStarter.getDefaultInstance().prepare(config);
+            mongod.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(mongod::stop));
+            initiate(port);
+            return "mongodb://localhost:" + port + "/movements?replicaSet=" + REPLICA_SET;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void initiate(int port) {
+        try (MongoClient client = MongoClients.create("mongodb://localhost:" + port + "/?directConnection=true")) {
+            Document members = new Document("_id", 0).append("host", "localhost:" + port);
+            Mono.from(client.getDatabase("admin").runCommand(new Document("replSetInitiate",
+                    new Document("_id", REPLICA_SET).append("members", List.of(members))))).block();
+            Document primary = Mono.defer(() -> Mono.from(client.getDatabase("admin").runCommand(new Document("hello", 1))))
+                    .filter(hello -> hello.getBoolean("isWritablePrimary", false))
+                    .repeatWhenEmpty(300, repeat -> repeat.delayElements(Duration.ofMillis(100)))
+                    .block();
+            if (primary == null) {
+                throw new IllegalStateException("El replica set embebido no eligio primario");
+            }
+        }
+    }
+
+}
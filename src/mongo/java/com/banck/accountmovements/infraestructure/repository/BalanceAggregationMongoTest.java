@@ -0,0 +1,165 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.EmbeddedReplicaSet;
+import com.banck.accountmovements.aplication.model.MovementRepository;
+import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.domain.MovementSummary;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.utils.MovementIdGenerator;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Mide el saldo y el resumen calculados en Mongo sobre cuentas de 10.000 y
+ * 100.000 movimientos, uno de cada diez sin migrar a centimos, frente a
+ * recorrer los movimientos y sumarlos en Java como se hacia antes. Reporta la
+ * latencia de ambos, los bytes que cada uno trae de Mongo y el tamano de la
+ * coleccion y sus indices.
+ */
+class BalanceAggregationMongoTest extends EmbeddedReplicaSet {
+
+    static final int RUNS = 20;
+
+    @Autowired
+    MovementRepository movementRepository;
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Autowired
+    MovementIdGenerator ids;
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000})
+    void balanceAndSummaryOverLargeHistories(int size) {
+        String account = "AG-" + ids.next();
+        long expected = insert(account, size);
+
+        long[] balance = new long[RUNS];
+        long[] summary = new long[RUNS];
+        long[] streamedBalance = new long[RUNS];
+        long[] streamedSummary = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            assertEquals(expected, movementRepository.balanceByAccount(account).block());
+            balance[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long total = movementRepository.summaryByAccount(account)
+                    .map(MovementSummary::getAmountMinor)
+                    .reduce(0L, Long::sum)
+                    .block();
+            summary[i] = System.nanoTime() - start;
+            assertEquals(expected, total);
+
+            // Como antes: todos los movimientos de la cuenta, sumados en Java.
+            start = System.nanoTime();
+            assertEquals(expected, movementRepository.listByAccount(account)
+                    .collect(() -> new long[1], (sum, m) -> sum[0] += m.getAmountMinor())
+                    .map(sum -> sum[0])
+                    .block());
+            streamedBalance[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Map<String, Long> byConcept = movementRepository.listByAccount(account)
+                    .collect(Collectors.groupingBy(m -> m.getConcept() + ":" + m.getMovementType(),
+                            Collectors.summingLong(Movement::getAmountMinor)))
+                    .block();
+            streamedSummary[i] = System.nanoTime() - start;
+            assertEquals(expected, byConcept.values().stream().mapToLong(Long::longValue).sum());
+        }
+
+        Document stats = template.executeCommand(new Document("collStats", template.getCollectionName(MovementDao.class))).block();
+        System.out.printf("==== Agregacion sobre %d movimientos ====%n", size);
+        System.out.printf("balanceByAccount ms p50: %.2f, max: %.2f, bytes: %d%n", percentile(balance, 0.5), percentile(balance, 1.0),
+                aggregated(MovementCrudRepository.balanceAggregation(account)));
+        System.out.printf("summaryByAccount ms p50: %.2f, max: %.2f, bytes: %d%n", percentile(summary, 0.5), percentile(summary, 1.0),
+                aggregated(MovementCrudRepository.summaryAggregation(account)));
+        long bytes = streamed(account);
+        System.out.printf("saldo recorriendo movimientos ms p50: %.2f, max: %.2f, bytes: %d%n",
+                percentile(streamedBalance, 0.5), percentile(streamedBalance, 1.0), bytes);
+        System.out.printf("resumen recorriendo movimientos ms p50: %.2f, max: %.2f, bytes: %d%n",
+                percentile(streamedSummary, 0.5), percentile(streamedSummary, 1.0), bytes);
+        System.out.printf("coleccion: %d documentos, %d bytes de datos, %d bytes de indices%n",
+                stats.get("count", Number.class).longValue(),
+                stats.get("size", Number.class).longValue(),
+                stats.get("totalIndexSize", Number.class).longValue());
+    }
+
+    /**
+     * Bytes BSON de los documentos que devuelve la agregacion.
+     */
+    long aggregated(Aggregation aggregation) {
+        return template.aggregate(aggregation, template.getCollectionName(MovementDao.class), Document.class)
+                .map(BalanceAggregationMongoTest::bytes)
+                .reduce(0L, Long::sum)
+                .block();
+    }
+
+    /**
+     * Bytes BSON de los movimientos de la cuenta, en ambas colecciones, que
+     * trae el recorrido.
+     */
+    long streamed(String account) {
+        Query query = Query.query(Criteria.where("account").is(account));
+        return Flux.concat(
+                template.find(query, Document.class, template.getCollectionName(MovementDao.class)),
+                template.find(query, Document.class, MovementArchiver.COLLECTION))
+                .map(BalanceAggregationMongoTest::bytes)
+                .reduce(0L, Long::sum)
+                .block();
+    }
+
+    static long bytes(Document document) {
+        return new RawBsonDocument(document, new DocumentCodec()).getByteBuffer().remaining();
+    }
+
+    /**
+     * Inserta los movimientos por lotes y devuelve el saldo esperado.
+     */
+    long insert(String account, int size) {
+        long[] expected = new long[1];
+        Flux.range(0, size)
+                .map(i -> {
+                    MovementDao md = new MovementDao();
+                    md.setMovement(ids.next());
+                    md.setAccount(account);
+                    md.setCustomer("C-" + account);
+                    md.setConcept(i % 2 == 0 ? "DP" : "RT");
+                    md.setMovementType(i % 2 == 0 ? "PAYMENT" : "CHARGE");
+                    md.setTimestamp(System.currentTimeMillis() - i);
+                    long amountMinor = i % 2 == 0 ? 1234 : -567;
+                    md.setAmount(amountMinor / 100.0);
+                    if (i % 10 != 0) {
+                        md.setAmountMinor(amountMinor);
+                    }
+                    expected[0] += amountMinor;
+                    return md;
+                })
+                .buffer(1000)
+                .concatMap(batch -> template.insertAll(batch))
+                .blockLast();
+        return expected[0];
+    }
+
+    static double percentile(long[] samples, double p) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+}
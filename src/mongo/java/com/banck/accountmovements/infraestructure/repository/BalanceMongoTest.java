@@ -0,0 +1,91 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.EmbeddedReplicaSet;
+import com.banck.accountmovements.aplication.BalanceOperations;
+import com.banck.accountmovements.aplication.model.BalanceRepository;
+import com.banck.accountmovements.aplication.model.MovementRepository;
+import com.banck.accountmovements.domain.Balance;
+import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.infraestructure.model.dao.BalanceDao;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.utils.MovementIdGenerator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BalanceMongoTest extends EmbeddedReplicaSet {
+
+    @Autowired
+    MovementRepository movementRepository;
+
+    @Autowired
+    BalanceRepository balanceRepository;
+
+    @Autowired
+    BalanceOperations balanceOperations;
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Autowired
+    MovementIdGenerator ids;
+
+    MovementDao history(String account, long amountMinor) {
+        MovementDao md = new MovementDao();
+        md.setMovement(ids.next());
+        md.setAccount(account);
+        md.setCustomer("C-" + account);
+        md.setAmountMinor(amountMinor);
+        md.setAmount(amountMinor / 100.0);
+        md.setTimestamp(System.currentTimeMillis());
+        return md;
+    }
+
+    @Test
+    void firstWriteOnLegacyAccountKeepsItsHistory() {
+        String account = "BL-" + ids.next();
+        template.insertAll(List.of(history(account, 3000), history(account, 2000))).blockLast();
+
+        Movement deposit = new Movement();
+        deposit.setMovement(ids.next());
+        deposit.setAccount(account);
+        deposit.setCustomer("C-" + account);
+        deposit.setAmountMinor(1000);
+        deposit.setTimestamp(System.currentTimeMillis());
+        movementRepository.create(deposit).block();
+
+        assertEquals(6000, balanceRepository.get(account).map(Balance::getAmountMinor).block());
+    }
+
+    @Test
+    void availableSeedsTheBalanceOfLegacyAccounts() {
+        String account = "BL-" + ids.next();
+        template.insertAll(List.of(history(account, 3000), history(account, -500))).blockLast();
+
+        assertEquals(2500, balanceOperations.available(account).block());
+        assertEquals(2500, balanceRepository.get(account).map(Balance::getAmountMinor).block());
+    }
+
+    @Test
+    void rebuildCorrectsBalancesAndRemovesOrphans() {
+        String account = "BL-" + ids.next();
+        String orphan = "BL-" + ids.next();
+        template.insertAll(List.of(history(account, 4000))).blockLast();
+        BalanceDao wrong = new BalanceDao();
+        wrong.setAccount(account);
+        wrong.setAmountMinor(1);
+        BalanceDao stale = new BalanceDao();
+        stale.setAccount(orphan);
+        stale.setAmountMinor(700);
+        template.insertAll(List.of(wrong, stale)).blockLast();
+
+        balanceOperations.rebuild().blockLast();
+
+        assertEquals(4000, balanceRepository.get(account).map(Balance::getAmountMinor).block());
+        assertNull(balanceRepository.get(orphan).block());
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.EmbeddedReplicaSet;
+import com.banck.accountmovements.aplication.model.BalanceRepository;
+import com.banck.accountmovements.aplication.model.MovementRepository;
+import com.banck.accountmovements.aplication.model.RollupRepository;
+import com.banck.accountmovements.domain.Balance;
+import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.domain.MovementResult;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.infraestructure.rest.MovementController;
+import com.banck.accountmovements.utils.MovementIdGenerator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Registro por lotes sin transacciones y sin consultar los limites de la
+ * cuenta.
+ */
+@SpringBootTest(properties = {
+    "spring.cloud.config.enabled=false",
+    "eureka.client.enabled=false",
+    "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration",
+    "movement.id.node=1",
+    "movement.limits.enabled=false"
+})
+class BulkMongoTest extends EmbeddedReplicaSet {
+
+    @Autowired
+    MovementRepository movementRepository;
+
+    @Autowired
+    RollupRepository rollupRepository;
+
+    @Autowired
+    MovementController controller;
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Autowired
+    MovementIdGenerator ids;
+
+    @SpyBean
+    BalanceRepository balanceRepository;
+
+    Movement movement(String account, long amountMinor) {
+        Movement m = new Movement();
+        m.setMovement(ids.next());
+        m.setAccount(account);
+        m.setCustomer("C-" + account);
+        m.setAmountMinor(amountMinor);
+        m.setConcept(amountMinor < 0 ? "RT" : "DP");
+        m.setTimestamp(System.currentTimeMillis());
+        return m;
+    }
+
+    Movement request(String account, double amount, String concept) {
+        Movement m = new Movement();
+        m.setAccount(account);
+        m.setCustomer("C-" + account);
+        m.setAmount(amount);
+        m.setConcept(concept);
+        return m;
+    }
+
+    long balance(String account) {
+        return balanceRepository.get(account).map(Balance::getAmountMinor).defaultIfEmpty(0L).block();
+    }
+
+    List<MovementDao> stored(String account) {
+        return template.find(Query.query(Criteria.where("account").is(account)), MovementDao.class).collectList().block();
+    }
+
+    @Test
+    void eachAccountOfABatchIsAppliedOnce() {
+        String a = "BK-" + ids.next();
+        String b = "BK-" + ids.next();
+        List<Movement> batch = List.of(movement(a, 1000), movement(b, 500), movement(a, 2000), movement(a, -300), movement(b, 700));
+
+        movementRepository.createAll(batch).blockLast();
+
+        verify(balanceRepository, times(1)).add(eq(a), eq(2700L));
+        verify(balanceRepository, times(1)).add(eq(b), eq(1200L));
+        assertEquals(2700, balance(a));
+        assertEquals(1200, balance(b));
+        assertEquals(3, rollupRepository.countInMonth(a, batch.get(0).getTimestamp()).block());
+        assertEquals(2, rollupRepository.countInMonth(b, batch.get(0).getTimestamp()).block());
+    }
+
+    @Test
+    void oneRequestMixesAccountsAndChecksEachBalance() {
+        String a = "BK-" + ids.next();
+        String b = "BK-" + ids.next();
+
+        List<MovementResult> results = controller.createBulk(Flux.just(
+                request(a, 50, "DP"), request(b, 20, "DP"), request(a, 30, "RT"), request(b, 25, "RT")))
+                .collectList().block();
+
+        assertEquals(4, results.size());
+        assertEquals(3, results.stream().filter(MovementResult::isAccepted).count());
+        MovementResult overdraft = results.stream().filter(r -> !r.isAccepted()).findFirst().get();
+        assertEquals(b, overdraft.getMovement().getAccount());
+        assertEquals("El movimiento a efectuar sobrepasa el saldo disponible.", overdraft.getMessage());
+        assertEquals(2000, balance(a));
+        assertEquals(2000, balance(b));
+    }
+
+    @Test
+    void invalidMovementsAreRejectedWithoutWrites() {
+        String a = "BK-" + ids.next();
+
+        List<MovementResult> results = controller.createBulk(Flux.just(
+                request(a, 50, null), request(a, 0, "DP"), request(a, 10, "XX")))
+                .collectList().block();
+
+        assertEquals(3, results.size());
+        assertTrue(results.stream().noneMatch(MovementResult::isAccepted));
+        assertTrue(stored(a).isEmpty());
+        assertEquals(0, balance(a));
+    }
+
+    @Test
+    void partiallyStoredBatchReturnsAndAppliesOnlyWhatWasStored() {
+        String a = "BK-" + ids.next();
+        Movement first = movement(a, 1000);
+        Movement clash = movement(a, 2000);
+        Movement last = movement(a, 4000);
+        MovementDao taken = new MovementDao();
+        taken.setMovement(clash.getMovement());
+        taken.setAccount("BK-" + ids.next());
+        taken.setAmountMinor(1L);
+        template.insert(taken).block();
+
+        List<Movement> saved = movementRepository.createAll(List.of(first, clash, last)).collectList().block();
+
+        Set<String> returned = saved.stream().map(Movement::getMovement).collect(Collectors.toSet());
+        List<MovementDao> inDatabase = stored(a);
+        assertFalse(returned.contains(clash.getMovement()));
+        assertEquals(inDatabase.stream().map(MovementDao::getMovement).collect(Collectors.toSet()), returned);
+        assertEquals(inDatabase.stream().mapToLong(MovementDao::getAmountMinor).sum(), balance(a));
+        assertEquals(inDatabase.size(), rollupRepository.countInMonth(a, first.getTimestamp()).block());
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.EmbeddedReplicaSet;
+import com.banck.accountmovements.aplication.model.MovementRepository;
+import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.utils.MovementIdGenerator;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MovementArchiverMongoTest extends EmbeddedReplicaSet {
+
+    @Autowired
+    MovementRepository movementRepository;
+
+    @Autowired
+    MovementArchiver archiver;
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Autowired
+    MovementIdGenerator ids;
+
+    MovementDao old(String account, long amountMinor) {
+        MovementDao md = new MovementDao();
+        md.setMovement(ids.next());
+        md.setAccount(account);
+        md.setCustomer("C-" + account);
+        md.setAmountMinor(amountMinor);
+        md.setAmount(amountMinor / 100.0);
+        md.setTimestamp(System.currentTimeMillis() - Duration.ofDays(400).toMillis());
+        return md;
+    }
+
+    MovementDao archived(String movement) {
+        return template.findById(movement, MovementDao.class, MovementArchiver.COLLECTION).block();
+    }
+
+    @Test
+    void archiveReplacesCopiesLeftByAnInterruptedPass() {
+        String account = "AR-" + ids.next();
+        MovementDao current = old(account, 3000);
+        MovementDao stale = old(account, 1000);
+        stale.setMovement(current.getMovement());
+        template.insert(current).block();
+        template.insert(stale, MovementArchiver.COLLECTION).block();
+
+        archiver.archive().block();
+
+        assertNull(template.findById(current.getMovement(), MovementDao.class).block());
+        assertEquals(3000, archived(current.getMovement()).getAmountMinor());
+    }
+
+    @Test
+    void updatingAnArchivedMovementMovesItBackToTheHotCollection() {
+        String account = "AR-" + ids.next();
+        MovementDao md = old(account, 3000);
+        template.insert(md, MovementArchiver.COLLECTION).block();
+
+        Movement changed = movementRepository.get(md.getMovement()).block();
+        changed.setAmountMinor(2500);
+        movementRepository.update(md.getMovement(), changed).block();
+
+        assertEquals(2500, template.findById(md.getMovement(), MovementDao.class).block().getAmountMinor());
+        assertNull(archived(md.getMovement()));
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.EmbeddedReplicaSet;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.utils.MovementIdGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica con explain que las consultas frecuentes sobre movimientos usan
+ * un indice y no recorren la coleccion.
+ */
+class MovementIndexesMongoTest extends EmbeddedReplicaSet {
+
+    @Autowired
+    MovementIndexes indexes;
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Autowired
+    MovementIdGenerator ids;
+
+    String account;
+    String customer;
+
+    @BeforeEach
+    void movements() {
+        indexes.ensure(MovementDao.class).blockLast();
+        indexes.ensure(MovementDao.class, MovementArchiver.COLLECTION).blockLast();
+        account = "IX-" + ids.next();
+        customer = "C-" + account;
+        Flux.range(0, 200)
+                .map(i -> {
+                    MovementDao md = new MovementDao();
+                    md.setMovement(ids.next());
+                    md.setAccount(i % 2 == 0 ? account : "IX-" + ids.next());
+                    md.setCustomer(customer);
+                    md.setAmountMinor(100L);
+                    md.setTimestamp(System.currentTimeMillis() - i * 1000L);
+                    return md;
+                })
+                .collectList()
+                .flatMapMany(template::insertAll)
+                .blockLast();
+    }
+
+    @Test
+    void pageByAccountUsesAnIndex() {
+        long now = System.currentTimeMillis();
+        assertIndexed(find(new Document("account", account)
+                .append("timestamp", new Document("$gte", now - 60_000).append("$lt", now)),
+                new Document("timestamp", -1).append("_id", -1)));
+    }
+
+    @Test
+    void pageByCustomerUsesAnIndex() {
+        assertIndexed(find(new Document("customer", customer), new Document("timestamp", -1).append("_id", -1)));
+    }
+
+    @Test
+    void pageByCustomerAndAccountUsesAnIndex() {
+        assertIndexed(find(new Document("customer", customer).append("account", account),
+                new Document("timestamp", -1).append("_id", -1)));
+    }
+
+    @Test
+    void pageOfAllMovementsUsesAnIndex() {
+        assertIndexed(find(new Document(), new Document("timestamp", -1).append("_id", -1)));
+    }
+
+    @Test
+    void movementsToArchiveUseAnIndex() {
+        assertIndexed(find(new Document("timestamp", new Document("$lt", System.currentTimeMillis() - 60_000)),
+                new Document("timestamp", 1)));
+    }
+
+    @Test
+    void balanceAggregationUsesAnIndex() {
+        Document explain = template.executeCommand(new Document("aggregate", collection())
+                .append("pipeline", List.of(
+                        new Document("$match", new Document("account", account)),
+                        new Document("$group", new Document("_id", "$account")
+                                .append("amountMinor", new Document("$sum", "$amountMinor")))))
+                .append("explain", true)).block();
+        assertIndexed(explain);
+    }
+
+    String collection() {
+        return template.getCollectionName(MovementDao.class);
+    }
+
+    Document find(Document filter, Document sort) {
+        Document find = new Document("find", collection()).append("filter", filter).append("limit", 50);
+        if (sort != null) {
+            find.append("sort", sort);
+        }
+        return template.executeCommand(new Document("explain", find).append("verbosity", "queryPlanner")).block();
+    }
+
+    static void assertIndexed(Document explain) {
+        List<Object> plans = new ArrayList<>();
+        collect(explain, "winningPlan", plans);
+        assertFalse(plans.isEmpty(), () -> "explain sin plan ganador: " + explain.toJson());
+        List<Object> stages = new ArrayList<>();
+        plans.forEach(plan -> collect(plan, "stage", stages));
+        assertTrue(stages.contains("IXSCAN"), () -> "el plan no usa indice: " + explain.toJson());
+        assertFalse(stages.contains("COLLSCAN"), () -> "el plan recorre la coleccion: " + explain.toJson());
+    }
+
+    /**
+     * Junta los valores de la clave en cualquier nivel del documento.
+     */
+    static void collect(Object node, String key, List<Object> out) {
+        if (node instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) node).entrySet()) {
+                if (key.equals(entry.getKey())) {
+                    out.add(entry.getValue());
+                }
+                collect(entry.getValue(), key, out);
+            }
+        } else if (node instanceof List) {
+            ((List<?>) node).forEach(item -> collect(item, key, out));
+        }
+    }
+
+}
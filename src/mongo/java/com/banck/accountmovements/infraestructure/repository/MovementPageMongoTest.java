@@ -0,0 +1,124 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.EmbeddedReplicaSet;
+import com.banck.accountmovements.aplication.model.MovementRepository;
+import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.domain.MovementQuery;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.utils.MovementIdGenerator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Recorre por paginas (timestamp, _id) el historial de una cuenta con
+ * movimientos del mismo instante y verifica el orden, la proyeccion y que
+ * una modificacion sin fecha no cambie el lugar del movimiento.
+ */
+class MovementPageMongoTest extends EmbeddedReplicaSet {
+
+    static final long[] OFFSETS = {0, 0, 1000, 2000, 2000, 2000, 3000, 4000};
+
+    @Autowired
+    MovementRepository movementRepository;
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Autowired
+    MovementIdGenerator ids;
+
+    String account;
+    List<MovementDao> inserted;
+
+    @BeforeEach
+    void movements() {
+        account = "PG-" + ids.next();
+        long now = System.currentTimeMillis();
+        inserted = new ArrayList<>();
+        for (long offset : OFFSETS) {
+            MovementDao md = new MovementDao();
+            md.setMovement(ids.next());
+            md.setAccount(account);
+            md.setCustomer("C-" + account);
+            md.setConcept("DP");
+            md.setAmountMinor(1000 + offset);
+            md.setAmount((1000 + offset) / 100.0);
+            md.setDate("10-05-2022");
+            md.setTime("12:00:00");
+            md.setTimestamp(now - offset);
+            inserted.add(md);
+        }
+        template.insertAll(inserted).blockLast();
+    }
+
+    List<String> expected() {
+        return inserted.stream()
+                .sorted(Comparator.comparing(MovementDao::getTimestamp).thenComparing(MovementDao::getMovement).reversed())
+                .map(MovementDao::getMovement)
+                .collect(Collectors.toList());
+    }
+
+    List<String> pages(int size) {
+        List<String> read = new ArrayList<>();
+        MovementQuery query = new MovementQuery();
+        query.setSize(size);
+        while (true) {
+            List<Movement> page = movementRepository.listByAccount(account, query).collectList().block();
+            page.forEach(m -> read.add(m.getMovement()));
+            if (page.size() < size) {
+                return read;
+            }
+            Movement last = page.get(page.size() - 1);
+            query.setAfterTimestamp(last.getTimestamp());
+            query.setAfterMovement(last.getMovement());
+        }
+    }
+
+    @Test
+    void pagesFollowTimestampAndIdWithoutGapsOrRepeats() {
+        assertEquals(expected(), pages(3));
+        assertEquals(expected(), pages(1));
+    }
+
+    @Test
+    void projectedPagesOnlyReadTheRequestedFields() {
+        MovementQuery query = new MovementQuery();
+        query.setSize(OFFSETS.length);
+        query.setFields(Set.of("amount"));
+
+        List<Movement> page = movementRepository.listByAccount(account, query).collectList().block();
+
+        assertEquals(expected(), page.stream().map(Movement::getMovement).collect(Collectors.toList()));
+        assertEquals(1000, page.get(0).getAmountMinor());
+        assertNull(page.get(0).getConcept());
+        assertNull(page.get(0).getAccount());
+    }
+
+    @Test
+    void updateWithoutTimestampKeepsThePosition() {
+        MovementDao original = inserted.get(3);
+        Movement change = new Movement();
+        change.setAccount(account);
+        change.setCustomer("C-" + account);
+        change.setConcept("DP");
+        change.setAmountMinor(5000);
+
+        movementRepository.update(original.getMovement(), change).block();
+
+        Movement updated = movementRepository.get(original.getMovement()).block();
+        assertEquals(original.getTimestamp(), updated.getTimestamp());
+        assertEquals(original.getDate(), updated.getDate());
+        assertEquals(original.getTime(), updated.getTime());
+        assertEquals(expected(), pages(3));
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.EmbeddedReplicaSet;
+import com.banck.accountmovements.aplication.model.MovementRepository;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.utils.MovementIdGenerator;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Recorre un historial grande con un consumidor lento y verifica que la
+ * demanda pendiente contra Mongo nunca supera un lote, es decir, que el
+ * historial no se carga completo en memoria.
+ */
+class MovementStreamMongoTest extends EmbeddedReplicaSet {
+
+    static final int SIZE = 50_000;
+
+    @Autowired
+    MovementRepository movementRepository;
+
+    @SpyBean
+    ReactiveMongoTemplate template;
+
+    @Autowired
+    MovementIdGenerator ids;
+
+    @Value("${movement.stream.batch-size:256}")
+    int streamBatchSize;
+
+    AtomicLong outstanding = new AtomicLong();
+    AtomicLong maxOutstanding = new AtomicLong();
+
+    @Test
+    void largeHistoryStreamsWithBoundedDemand() {
+        String account = "ST-" + ids.next();
+        Flux.range(0, SIZE)
+                .map(i -> {
+                    MovementDao md = new MovementDao();
+                    md.setMovement(ids.next());
+                    md.setAccount(account);
+                    md.setCustomer("C-" + account);
+                    md.setObservations("Movimiento de prueba numero " + i);
+                    md.setAmountMinor(100L);
+                    md.setTimestamp(System.currentTimeMillis() - i);
+                    return md;
+                })
+                .buffer(1000)
+                .concatMap(batch -> template.insertAll(batch))
+                .blockLast();
+        doAnswer(invocation -> tracked((Flux<?>) invocation.callRealMethod()))
+                .when(template).find(any(Query.class), eq(MovementDao.class), anyString());
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicLong maxHeap = new AtomicLong();
+        System.gc();
+        long baseHeap = memory.getHeapMemoryUsage().getUsed();
+        Long streamed = movementRepository.listByAccount(account)
+                .limitRate(1)
+                .index()
+                .doOnNext(indexed -> {
+                    if (indexed.getT1() % 1000 == 0) {
+                        maxHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    }
+                })
+                .count()
+                .block();
+
+        assertEquals(SIZE, streamed);
+        System.out.printf("==== Historial de %d movimientos ====%n", SIZE);
+        System.out.printf("demanda pendiente maxima: %d, lote: %d%n", maxOutstanding.get(), streamBatchSize);
+        System.out.printf("heap inicial: %d KB, maximo durante el recorrido: %d KB%n", baseHeap / 1024, maxHeap.get() / 1024);
+        assertTrue(maxOutstanding.get() <= streamBatchSize,
+                "La demanda pendiente contra Mongo llego a " + maxOutstanding.get());
+    }
+
+    /**
+     * Cuenta lo pedido menos lo entregado por la consulta a Mongo.
+     */
+    Flux<?> tracked(Flux<?> find) {
+        return find
+                .doOnRequest(n -> maxOutstanding.accumulateAndGet(outstanding.addAndGet(n), Math::max))
+                .doOnNext(document -> outstanding.decrementAndGet());
+    }
+
+}
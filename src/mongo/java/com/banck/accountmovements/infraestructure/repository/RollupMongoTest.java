@@ -0,0 +1,132 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.EmbeddedReplicaSet;
+import com.banck.accountmovements.aplication.BalanceOperations;
+import com.banck.accountmovements.aplication.model.MovementRepository;
+import com.banck.accountmovements.aplication.model.RollupRepository;
+import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.infraestructure.model.dao.BalanceRollupDao;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.utils.MovementIdGenerator;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollupMongoTest extends EmbeddedReplicaSet {
+
+    @Autowired
+    RollupRepository rollupRepository;
+
+    @Autowired
+    BalanceOperations balanceOperations;
+
+    @Autowired
+    MovementRepository movementRepository;
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Autowired
+    MovementIdGenerator ids;
+
+    long at(LocalDate date) {
+        return date.atTime(12, 0).atZone(RollupCrudRepository.ZONE).toInstant().toEpochMilli();
+    }
+
+    MovementDao movement(String account, long timestamp, long amountMinor, boolean migrated) {
+        MovementDao md = new MovementDao();
+        md.setMovement(ids.next());
+        md.setAccount(account);
+        md.setCustomer("C-" + account);
+        md.setAmount(amountMinor / 100.0);
+        md.setAmountMinor(migrated ? amountMinor : null);
+        md.setTimestamp(timestamp);
+        return md;
+    }
+
+    @Test
+    void rebuildCountsLegacyAmountsAndReplacesStaleRollups() {
+        String account = "RU-" + ids.next();
+        LocalDate day = LocalDate.of(2022, 1, 30);
+        template.insertAll(List.of(
+                movement(account, at(day.minusMonths(1)), 10000, false),
+                movement(account, at(day), 2500, true),
+                movement(account, at(day.plusDays(1)), -500, true))).blockLast();
+        template.insert(movement(account, at(day), 700, true), MovementArchiver.COLLECTION).block();
+        rollupRepository.record(account, at(day.minusYears(1)), 99999, 1).block();
+
+        balanceOperations.rebuildRollups().block();
+
+        assertEquals(10000, rollupRepository.closingBefore(account, at(day)).block());
+        assertEquals(13200, rollupRepository.closingBefore(account, at(day.plusDays(1))).block());
+        assertEquals(12700, rollupRepository.closingBefore(account, at(day.plusDays(2))).block());
+        assertEquals(3, rollupRepository.countInMonth(account, at(day)).block());
+        assertEquals(0, template.count(Query.query(Criteria.where("account").is(account)
+                .and("day").in(20210130, 202101)), BalanceRollupDao.class).block());
+    }
+
+    Movement created(String account, long timestamp, long amountMinor) {
+        Movement m = new Movement();
+        m.setMovement(ids.next());
+        m.setAccount(account);
+        m.setCustomer("C-" + account);
+        m.setAmountMinor(amountMinor);
+        m.setTimestamp(timestamp);
+        return movementRepository.create(m).block();
+    }
+
+    @Test
+    void updateMovesTheAmountBetweenRollups() {
+        String account = "RU-" + ids.next();
+        LocalDate day = LocalDate.of(2022, 5, 10);
+        Movement m = created(account, at(day), 4000);
+
+        m.setAmountMinor(1500);
+        m.setTimestamp(at(day.plusMonths(1)));
+        movementRepository.update(m.getMovement(), m).block();
+
+        assertEquals(0, rollupRepository.closingBefore(account, at(day.plusDays(1))).block());
+        assertEquals(0, rollupRepository.countInMonth(account, at(day)).block());
+        assertEquals(1500, rollupRepository.closingBefore(account, at(day.plusMonths(1).plusDays(1))).block());
+        assertEquals(1, rollupRepository.countInMonth(account, at(day.plusMonths(1))).block());
+    }
+
+    @Test
+    void deleteRemovesTheMovementFromItsRollups() {
+        String account = "RU-" + ids.next();
+        LocalDate day = LocalDate.of(2022, 6, 10);
+        created(account, at(day), 4000);
+        Movement deleted = created(account, at(day), 700);
+
+        movementRepository.delete(deleted.getMovement());
+
+        // delete no devuelve cuando termina.
+        Mono.defer(() -> rollupRepository.countInMonth(account, at(day)))
+                .filter(count -> count == 1)
+                .repeatWhenEmpty(50, repeat -> repeat.delayElements(Duration.ofMillis(100)))
+                .block();
+        assertEquals(4000, rollupRepository.closingBefore(account, at(day.plusDays(1))).block());
+    }
+
+    @Test
+    void concurrentRecordsAddUpInTheClosingBalance() {
+        String account = "RU-" + ids.next();
+        LocalDate day = LocalDate.of(2022, 3, 10);
+        Flux.range(1, 100)
+                .flatMap(i -> rollupRepository.record(account, at(day), i, 1), 16)
+                .blockLast();
+
+        assertEquals(5050, rollupRepository.closingBefore(account, at(day.plusDays(1))).block());
+        assertEquals(5050, rollupRepository.closingBefore(account, at(day.plusMonths(1))).block());
+        assertEquals(100, rollupRepository.countInMonth(account, at(day)).block());
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.EmbeddedReplicaSet;
+import com.banck.accountmovements.aplication.model.BalanceRepository;
+import com.banck.accountmovements.aplication.model.MovementRepository;
+import com.banck.accountmovements.domain.Balance;
+import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.banck.accountmovements.utils.MovementIdGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Transferencias sin transacciones: si falla un saldo despues de guardar los
+ * dos movimientos, ambas cuentas se reconstruyen.
+ */
+@SpringBootTest(properties = {
+    "spring.cloud.config.enabled=false",
+    "eureka.client.enabled=false",
+    "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration",
+    "movement.id.node=1",
+    "movement.transfer.transactional=false"
+})
+class TransferRepairMongoTest extends EmbeddedReplicaSet {
+
+    @Autowired
+    MovementRepository movementRepository;
+
+    @Autowired
+    ReactiveMongoTemplate template;
+
+    @Autowired
+    MovementIdGenerator ids;
+
+    @SpyBean
+    BalanceRepository balanceRepository;
+
+    Movement movement(String account, long amountMinor) {
+        Movement m = new Movement();
+        m.setMovement(ids.next());
+        m.setAccount(account);
+        m.setCustomer("C-" + account);
+        m.setAmountMinor(amountMinor);
+        m.setConcept("TR");
+        m.setMovementType(amountMinor < 0 ? "CHARGE" : "PAYMENT");
+        m.setTimestamp(System.currentTimeMillis());
+        return m;
+    }
+
+    long balance(String account) {
+        return balanceRepository.get(account).map(Balance::getAmountMinor).defaultIfEmpty(0L).block();
+    }
+
+    long movements(String account) {
+        return template.count(Query.query(Criteria.where("account").is(account)), MovementDao.class).block();
+    }
+
+    @Test
+    void failedCreditIsRepairedFromTheStoredLegs() {
+        String source = "TR-" + ids.next();
+        String target = "TR-" + ids.next();
+        movementRepository.create(movement(source, 10000)).block();
+        doReturn(Mono.error(new IllegalStateException("Fallo el abono")))
+                .when(balanceRepository).add(eq(target), anyLong());
+
+        movementRepository.transfer(movement(source, -2500), movement(target, 2500)).block();
+
+        assertEquals(2, movements(source));
+        assertEquals(1, movements(target));
+        assertEquals(7500, balance(source));
+        assertEquals(2500, balance(target));
+    }
+
+}
@@ -3,7 +3,7 @@ package com.banck.accountmovements;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {"movement.id.node=0", "movement.transfer.transactional=false"})
 class AccountMovementsApplicationTests {
 
 	@Test
@@ -0,0 +1,245 @@
+package com.banck.accountmovements.aplication.impl;
+
+import com.banck.accountmovements.spring.config.SpringConfiguration;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prueba el guard contra un servicio de cuentas local que agrega latencia y
+ * errores segun el numero de llamada.
+ */
+class AccountGuardTest {
+
+    HttpServer server;
+    ExecutorService executor = Executors.newCachedThreadPool();
+    AtomicInteger calls = new AtomicInteger();
+    volatile boolean failing;
+    volatile int status = 200;
+    volatile IntUnaryOperator delay = call -> 0;
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void startStub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/account/", exchange -> {
+            int call = calls.incrementAndGet();
+            try {
+                Thread.sleep(delay.applyAsInt(call));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"account\":\"78345212-653\",\"call\":" + call + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(failing ? 500 : status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    WebClient webClient() {
+        return new SpringConfiguration().accountWebClient("http://localhost:" + server.getAddress().getPort(), 10);
+    }
+
+    AccountGuard guard(Duration timeout, int maxConcurrent, boolean hedge) {
+        return new AccountGuard(registry, timeout, maxConcurrent, 50, 4, 4,
+                Duration.ofMillis(200), 2, hedge, 0.95, Duration.ofMillis(50));
+    }
+
+    Mono<String> get(AccountGuard guard) {
+        WebClient client = webClient();
+        return guard.call(() -> client.get().uri("/account/78345212-653").retrieve().bodyToMono(String.class));
+    }
+
+    double transitions(String from, String to) {
+        return registry.get("account.circuit.transitions").tag("from", from).tag("to", to).counter().count();
+    }
+
+    @Test
+    void circuitOpensOnFailuresAndClosesAfterTrialCalls() throws Exception {
+        AccountGuard guard = guard(Duration.ofSeconds(1), 64, false);
+        failing = true;
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(WebClientResponseException.class, () -> get(guard).block());
+        }
+        assertThrows(AccountGuard.RejectedException.class, () -> get(guard).block());
+        assertEquals(4, calls.get());
+        assertEquals(1, transitions("CLOSED", "OPEN"));
+        assertEquals(1, registry.get("account.circuit.state").gauge().value());
+
+        failing = false;
+        Thread.sleep(250);
+        get(guard).block();
+        assertEquals(2, registry.get("account.circuit.state").gauge().value());
+        get(guard).block();
+
+        assertEquals(6, calls.get());
+        assertEquals(1, transitions("OPEN", "HALF_OPEN"));
+        assertEquals(1, transitions("HALF_OPEN", "CLOSED"));
+        assertEquals(0, registry.get("account.circuit.state").gauge().value());
+        assertEquals(1, registry.get("account.calls.rejected").tag("reason", "circuit-open").counter().count());
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheCircuit() {
+        AccountGuard guard = guard(Duration.ofSeconds(1), 64, false);
+        status = 404;
+
+        for (int i = 0; i < 8; i++) {
+            assertThrows(WebClientResponseException.NotFound.class, () -> get(guard).block());
+        }
+
+        assertEquals(8, calls.get());
+        assertEquals(0, registry.get("account.circuit.state").gauge().value());
+        assertEquals(0, registry.get("account.calls.rejected").tag("reason", "circuit-open").counter().count());
+    }
+
+    @Test
+    void failedTrialCallReopensTheCircuit() throws Exception {
+        AccountGuard guard = guard(Duration.ofSeconds(1), 64, false);
+        failing = true;
+        for (int i = 0; i < 4; i++) {
+            assertThrows(WebClientResponseException.class, () -> get(guard).block());
+        }
+
+        Thread.sleep(250);
+        assertThrows(WebClientResponseException.class, () -> get(guard).block());
+        assertThrows(AccountGuard.RejectedException.class, () -> get(guard).block());
+
+        assertEquals(5, calls.get());
+        assertEquals(1, transitions("HALF_OPEN", "OPEN"));
+    }
+
+    @Test
+    void callsStartedBeforeATransitionAreIgnored() throws Exception {
+        AccountGuard guard = guard(Duration.ofSeconds(1), 64, false);
+        delay = call -> call == 1 ? 600 : 0;
+        CountDownLatch done = new CountDownLatch(1);
+        Disposable slow = get(guard).doFinally(signal -> done.countDown()).subscribe();
+
+        failing = true;
+        for (int i = 0; i < 4; i++) {
+            assertThrows(WebClientResponseException.class, () -> get(guard).block());
+        }
+        Thread.sleep(250);
+        failing = false;
+        get(guard).block();
+        done.await();
+        slow.dispose();
+
+        // La llamada lenta empezo con el circuito cerrado: no completa la prueba.
+        assertEquals(0, transitions("HALF_OPEN", "CLOSED"));
+        assertEquals(2, registry.get("account.circuit.state").gauge().value());
+    }
+
+    @Test
+    void slowCallsTimeOut() {
+        AccountGuard guard = guard(Duration.ofMillis(100), 64, false);
+        delay = call -> 500;
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> get(guard).block());
+
+        assertTrue(Exceptions.unwrap(error) instanceof TimeoutException);
+        assertEquals(0, registry.get("account.bulkhead.active").gauge().value());
+    }
+
+    @Test
+    void bulkheadRejectsCallsOverTheLimit() throws Exception {
+        AccountGuard guard = guard(Duration.ofSeconds(1), 1, false);
+        delay = call -> 300;
+        CountDownLatch done = new CountDownLatch(1);
+
+        Disposable first = get(guard).doFinally(signal -> done.countDown()).subscribe();
+        assertThrows(AccountGuard.RejectedException.class, () -> get(guard).block());
+        done.await();
+        first.dispose();
+
+        assertEquals(1, calls.get());
+        assertEquals(1, registry.get("account.calls.rejected").tag("reason", "bulkhead").counter().count());
+    }
+
+    @Test
+    void hedgeAnswersWhenTheFirstCallIsSlow() {
+        // Sin muestras el hedge sale a la mitad del timeout: 200ms.
+        AccountGuard guard = guard(Duration.ofMillis(400), 64, true);
+        delay = call -> call == 1 ? 350 : 0;
+
+        String account = get(guard).block();
+
+        assertTrue(account.contains("\"call\":2"));
+        assertEquals(1, registry.get("account.hedge").tag("result", "sent").counter().count());
+        assertEquals(1, registry.get("account.hedge").tag("result", "won").counter().count());
+    }
+
+    @Test
+    void failedFirstCallDoesNotSendAHedge() throws Exception {
+        AccountGuard guard = guard(Duration.ofMillis(400), 64, true);
+        failing = true;
+
+        assertThrows(WebClientResponseException.class, () -> get(guard).block());
+        Thread.sleep(300);
+
+        assertEquals(1, calls.get());
+        assertEquals(0, registry.get("account.hedge").tag("result", "sent").counter().count());
+    }
+
+    @Test
+    void noHedgeWhileTheCircuitIsNotClosed() throws Exception {
+        AccountGuard guard = guard(Duration.ofMillis(400), 64, true);
+        failing = true;
+        for (int i = 0; i < 4; i++) {
+            assertThrows(WebClientResponseException.class, () -> get(guard).block());
+        }
+        Thread.sleep(250);
+        failing = false;
+        delay = call -> 300;
+
+        get(guard).block();
+
+        assertEquals(5, calls.get());
+        assertEquals(0, registry.get("account.hedge").tag("result", "sent").counter().count());
+    }
+
+    @Test
+    void fastCallsDoNotSendHedges() {
+        AccountGuard guard = guard(Duration.ofMillis(400), 64, true);
+
+        for (int i = 0; i < 5; i++) {
+            get(guard).block();
+        }
+
+        assertEquals(5, calls.get());
+        assertEquals(0, registry.get("account.hedge").tag("result", "sent").counter().count());
+    }
+
+}
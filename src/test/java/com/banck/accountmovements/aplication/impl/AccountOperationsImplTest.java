@@ -0,0 +1,139 @@
+package com.banck.accountmovements.aplication.impl;
+
+import com.banck.accountmovements.domain.Account;
+import com.banck.accountmovements.domain.AccountLimit;
+import com.banck.accountmovements.spring.config.SpringConfiguration;
+import com.banck.accountmovements.utils.MovementStages;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AccountOperationsImplTest {
+
+    static final String MISSING = "00000000-000";
+
+    HttpServer server;
+    AtomicInteger calls = new AtomicInteger();
+    AtomicInteger batchCalls = new AtomicInteger();
+
+    @BeforeEach
+    void startStub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/account/", exchange -> {
+            if (exchange.getRequestURI().getPath().equals("/account/batch")) {
+                batchCalls.incrementAndGet();
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                List<String> accounts = List.of(body.replaceAll("[\\[\\]\"]", "").split(","));
+                respond(exchange, 200, accounts.stream().map(this::account).collect(Collectors.joining(",", "[", "]")));
+            } else {
+                calls.incrementAndGet();
+                String account = exchange.getRequestURI().getPath().substring("/account/".length());
+                if (account.equals(MISSING)) {
+                    respond(exchange, 404, "{}");
+                } else {
+                    respond(exchange, 200, account(account));
+                }
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    String account(String account) {
+        return "{\"account\":\"" + account + "\",\"topMMovem\":5,\"status\":true}";
+    }
+
+    void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    WebClient webClient() {
+        return new SpringConfiguration().accountWebClient("http://localhost:" + server.getAddress().getPort(), 10);
+    }
+
+    AccountGuard guard() {
+        return new AccountGuard(new SimpleMeterRegistry(), Duration.ofSeconds(1), 64, 50, 20, 10,
+                Duration.ofSeconds(10), 3, false, 0.95, Duration.ofMillis(50));
+    }
+
+    @Test
+    void cachedAccountIsFetchedOnce() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AccountOperationsImpl operations = new AccountOperationsImpl(
+                new AccountLoader(webClient(), guard(), false, 50, Duration.ofMillis(10)),
+                registry, new MovementStages(new MockEnvironment()), 100, Duration.ofMinutes(1), Duration.ofSeconds(45));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("78345212-653", operations.get("78345212-653").block().getAccount());
+        }
+        operations.get("78345212-654").block();
+
+        assertEquals(2, calls.get());
+        assertEquals(4, registry.get("cache.gets").tag("cache", "account").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void concurrentLookupsShareOneCall() {
+        AccountLoader loader = new AccountLoader(webClient(), guard(), false, 50, Duration.ofMillis(10));
+
+        List<Account> accounts = Flux.range(0, 20)
+                .flatMap(i -> loader.load("78345212-653"))
+                .collectList()
+                .block();
+
+        assertEquals(20, accounts.size());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void missingAccountIsRejectedAsNotFound() {
+        AccountOperationsImpl operations = new AccountOperationsImpl(
+                new AccountLoader(webClient(), guard(), false, 50, Duration.ofMillis(10)),
+                new SimpleMeterRegistry(), new MovementStages(new MockEnvironment()), 100, Duration.ofMinutes(1), Duration.ofSeconds(45));
+        LimitOperationsImpl limits = new LimitOperationsImpl(operations, null, true);
+
+        AccountLimit limit = limits.limit(MISSING, System.currentTimeMillis()).block();
+
+        assertEquals(LimitOperationsImpl.NOT_FOUND, limits.check(limit, 1).block());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void lookupsInsideTheWindowAreBatched() {
+        AccountLoader loader = new AccountLoader(webClient(), guard(), true, 50, Duration.ofMillis(50));
+
+        List<Account> accounts = Flux.range(0, 10)
+                .flatMap(i -> loader.load("78345212-65" + i))
+                .collectList()
+                .block();
+
+        assertEquals(10, accounts.size());
+        assertEquals(1, batchCalls.get());
+        assertEquals(0, calls.get());
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.banck.accountmovements.aplication.impl;
+
+import com.banck.accountmovements.aplication.IdempotencyOperations;
+import com.banck.accountmovements.aplication.model.IdempotencyRepository;
+import com.banck.accountmovements.domain.StoredResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyOperationsImplTest {
+
+    final Map<String, StoredResponse> stored = new ConcurrentHashMap<>();
+
+    final IdempotencyRepository repository = new IdempotencyRepository() {
+        @Override
+        public Mono<StoredResponse> get(String key) {
+            return Mono.fromCallable(() -> stored.get(key));
+        }
+
+        @Override
+        public Mono<Boolean> reserve(String key, String requestHash) {
+            return Mono.fromCallable(() -> {
+                StoredResponse reservation = new StoredResponse();
+                reservation.setKey(key);
+                reservation.setRequestHash(requestHash);
+                return stored.putIfAbsent(key, reservation) == null;
+            });
+        }
+
+        @Override
+        public Mono<StoredResponse> complete(StoredResponse response) {
+            return Mono.fromCallable(() -> {
+                stored.put(response.getKey(), response);
+                return response;
+            });
+        }
+
+        @Override
+        public Mono<Void> release(String key) {
+            return Mono.fromRunnable(() -> stored.computeIfPresent(key, (k, r) -> r.isCompleted() ? r : null));
+        }
+    };
+
+    final AtomicInteger executions = new AtomicInteger();
+
+    IdempotencyOperationsImpl instance(Duration wait) {
+        return new IdempotencyOperationsImpl(repository, new SimpleMeterRegistry(), 100, Duration.ofMinutes(1), wait);
+    }
+
+    Mono<StoredResponse> response(String message) {
+        return Mono.fromCallable(() -> {
+            executions.incrementAndGet();
+            StoredResponse r = new StoredResponse();
+            r.setMessage(message);
+            return r;
+        });
+    }
+
+    @Test
+    void retryWithTheSameRequestGetsTheOriginalResponse() {
+        IdempotencyOperationsImpl operations = instance(Duration.ofSeconds(1));
+
+        assertEquals("primera", operations.execute("create:1", "hash-a", () -> response("primera")).block().getMessage());
+        assertEquals("primera", operations.execute("create:1", "hash-a", () -> response("segunda")).block().getMessage());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void reusedKeyWithAnotherRequestIsAConflict() {
+        IdempotencyOperationsImpl operations = instance(Duration.ofSeconds(1));
+        operations.execute("create:2", "hash-a", () -> response("primera")).block();
+
+        assertThrows(IdempotencyOperations.ConflictException.class,
+                () -> operations.execute("create:2", "hash-b", () -> response("otra")).block());
+        assertThrows(IdempotencyOperations.ConflictException.class,
+                () -> instance(Duration.ofSeconds(1)).execute("create:2", "hash-b", () -> response("otra")).block());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void concurrentCallsOnTwoInstancesRunTheOperationOnce() {
+        IdempotencyOperationsImpl first = instance(Duration.ofSeconds(2));
+        IdempotencyOperationsImpl second = instance(Duration.ofSeconds(2));
+        Sinks.One<StoredResponse> slow = Sinks.one();
+
+        Mono<StoredResponse> running = first.execute("create:3", "hash-a", () -> {
+            executions.incrementAndGet();
+            return slow.asMono();
+        }).cache();
+        running.subscribe();
+        Mono<StoredResponse> retried = second.execute("create:3", "hash-a", () -> response("duplicada"))
+                .subscribeOn(Schedulers.boundedElastic())
+                .cache();
+        retried.subscribe();
+
+        StoredResponse original = new StoredResponse();
+        original.setMessage("original");
+        slow.tryEmitValue(original);
+
+        assertEquals("original", running.block(Duration.ofSeconds(3)).getMessage());
+        assertEquals("original", retried.block(Duration.ofSeconds(3)).getMessage());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void concurrentCallsOnOneInstanceShareTheExecution() {
+        IdempotencyOperationsImpl operations = instance(Duration.ofSeconds(2));
+
+        Long originals = Flux.range(0, 20)
+                .flatMap(i -> operations.execute("create:4", "hash-a", () -> response("original").delayElement(Duration.ofMillis(50)))
+                        .subscribeOn(Schedulers.parallel()))
+                .filter(r -> "original".equals(r.getMessage()))
+                .count()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(20, originals);
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void keyStillInProgressAfterTheWaitIsAConflict() {
+        instance(Duration.ofSeconds(1)).execute("create:5", "hash-a", Mono::never).subscribe();
+
+        assertThrows(IdempotencyOperations.ConflictException.class,
+                () -> instance(Duration.ofMillis(200)).execute("create:5", "hash-a", () -> response("duplicada")).block());
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void failedOperationReleasesTheKey() {
+        IdempotencyOperationsImpl operations = instance(Duration.ofSeconds(1));
+
+        assertThrows(IllegalStateException.class, () -> operations.execute("create:6", "hash-a",
+                () -> Mono.error(new IllegalStateException("Fallo el registro"))).block());
+        assertEquals("reintento", operations.execute("create:6", "hash-a", () -> response("reintento")).block().getMessage());
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.banck.accountmovements.aplication.impl;
+
+import com.banck.accountmovements.aplication.model.RollupRepository;
+import com.banck.accountmovements.domain.Account;
+import com.banck.accountmovements.domain.AccountLimit;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LimitOperationsImplTest {
+
+    static final long JANUARY_15 = LocalDate.of(2022, 1, 15).atStartOfDay(LimitOperationsImpl.ZONE).plusHours(12)
+            .toInstant().toEpochMilli();
+
+    long monthCount;
+
+    final RollupRepository rollups = new RollupRepository() {
+        @Override
+        public Mono<Void> record(String account, long timestamp, long netMinor, long count) {
+            return Mono.empty();
+        }
+
+        @Override
+        public Mono<Long> closingBefore(String account, long timestamp) {
+            return Mono.just(0L);
+        }
+
+        @Override
+        public Mono<Long> countInMonth(String account, long timestamp) {
+            return Mono.just(monthCount);
+        }
+
+        @Override
+        public Mono<Long> rebuild(String account) {
+            return Mono.just(0L);
+        }
+    };
+
+    Account account(int topMMovem, int dayMovem, boolean status) {
+        Account account = new Account();
+        account.setAccount("78345212-653");
+        account.setTopMMovem(topMMovem);
+        account.setDayMovem(dayMovem);
+        account.setStatus(status);
+        return account;
+    }
+
+    Optional<String> check(Account account, int movements) {
+        LimitOperationsImpl limits = new LimitOperationsImpl(customer -> Mono.justOrEmpty(account), rollups, true);
+        return limits.limit("78345212-653", JANUARY_15)
+                .flatMap(limit -> limits.check(limit, movements))
+                .block();
+    }
+
+    @Test
+    void monthlyLimitIsReadFromTheCounter() {
+        monthCount = 4;
+        assertTrue(check(account(5, 0, true), 1).isEmpty());
+        assertEquals("La cuenta alcanzo el maximo de 5 movimientos del mes.", check(account(5, 0, true), 2).get());
+        monthCount = 5;
+        assertTrue(check(account(5, 0, true), 1).isPresent());
+        assertTrue(check(account(0, 0, true), 1).isEmpty());
+    }
+
+    @Test
+    void fixedDayAccountsAllowOneMovementThatDay() {
+        monthCount = 0;
+        assertTrue(check(account(0, 15, true), 1).isEmpty());
+        assertEquals("La cuenta solo admite movimientos el dia 20 de cada mes.", check(account(0, 20, true), 1).get());
+        monthCount = 1;
+        assertTrue(check(account(0, 15, true), 1).isPresent());
+    }
+
+    @Test
+    void inactiveOrMissingAccountsAreRejected() {
+        assertEquals(LimitOperationsImpl.INACTIVE, check(account(0, 0, false), 1));
+        assertEquals(LimitOperationsImpl.NOT_FOUND, check(null, 1));
+    }
+
+    @Test
+    void unreachableAccountsAreRejectedAsUnavailable() {
+        LimitOperationsImpl limits = new LimitOperationsImpl(customer -> Mono.error(new IllegalStateException("caido")), rollups, true);
+        AccountLimit limit = limits.limit("78345212-653", JANUARY_15).block();
+        assertEquals(LimitOperationsImpl.UNAVAILABLE, limits.check(limit, 1).block());
+    }
+
+    @Test
+    void checkOnlyReadsTheMonthCount() {
+        AtomicInteger lookups = new AtomicInteger();
+        LimitOperationsImpl limits = new LimitOperationsImpl(customer -> {
+            lookups.incrementAndGet();
+            return Mono.just(account(5, 0, true));
+        }, rollups, true);
+        AccountLimit limit = limits.limit("78345212-653", JANUARY_15).block();
+
+        monthCount = 4;
+        assertTrue(limits.check(limit, 1).block().isEmpty());
+        monthCount = 5;
+        assertTrue(limits.check(limit, 1).block().isPresent());
+        assertEquals(1, lookups.get());
+    }
+
+}
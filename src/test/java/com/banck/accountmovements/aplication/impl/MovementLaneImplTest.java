@@ -0,0 +1,123 @@
+package com.banck.accountmovements.aplication.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Las cuentas "1" y "2" caen en carriles distintos con 1024 carriles.
+ */
+class MovementLaneImplTest {
+
+    MovementLaneImpl lane(Duration timeout) {
+        return new MovementLaneImpl(new SimpleMeterRegistry(), 1024, timeout);
+    }
+
+    @Test
+    void operationsOnOneAccountRunInOrderWithoutOverlapping() {
+        MovementLaneImpl lane = lane(Duration.ofSeconds(5));
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+
+        Flux.range(0, 50)
+                .flatMap(i -> lane.execute("1", () -> Mono.fromCallable(() -> {
+                    if (running.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    order.add(i);
+                    return i;
+                }).delayElement(Duration.ofMillis(1)).doFinally(s -> running.decrementAndGet())))
+                .blockLast(Duration.ofSeconds(10));
+
+        assertFalse(overlapped.get());
+        assertEquals(Flux.range(0, 50).collectList().block(), order);
+    }
+
+    @Test
+    void cancellingTheRunningOperationReleasesTheStripe() {
+        MovementLaneImpl lane = lane(Duration.ofSeconds(5));
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Disposable first = lane.execute("1", () -> Mono.never().doOnCancel(() -> cancelled.set(true))).subscribe();
+
+        first.dispose();
+
+        assertTrue(cancelled.get());
+        assertEquals("ok", lane.execute("1", () -> Mono.just("ok")).block(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void cancelledOperationsWaitingInQueueAreSkipped() {
+        MovementLaneImpl lane = lane(Duration.ofSeconds(5));
+        Sinks.One<String> blocker = Sinks.one();
+        AtomicBoolean started = new AtomicBoolean();
+        lane.execute("1", blocker::asMono).subscribe();
+        Disposable queued = lane.execute("1", () -> {
+            started.set(true);
+            return Mono.just("tarde");
+        }).subscribe();
+
+        queued.dispose();
+        blocker.tryEmitValue("listo");
+
+        assertEquals("ok", lane.execute("1", () -> Mono.just("ok")).block(Duration.ofSeconds(1)));
+        assertFalse(started.get());
+    }
+
+    @Test
+    void hungOperationTimesOutAndTheNextOneRuns() {
+        MovementLaneImpl lane = lane(Duration.ofMillis(100));
+
+        assertThrows(TimeoutException.class, () -> {
+            try {
+                lane.execute("1", Mono::never).block(Duration.ofSeconds(1));
+            } catch (RuntimeException e) {
+                throw e.getCause() == null ? e : e.getCause();
+            }
+        });
+        assertEquals("ok", lane.execute("1", () -> Mono.just("ok")).block(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void twoAccountOperationHoldsBothStripes() {
+        MovementLaneImpl lane = lane(Duration.ofSeconds(5));
+        Sinks.One<String> transfer = Sinks.one();
+        AtomicBoolean credited = new AtomicBoolean();
+        lane.execute("1", "2", transfer::asMono).subscribe();
+        lane.execute("2", () -> Mono.fromRunnable(() -> credited.set(true))).subscribe();
+
+        assertFalse(credited.get());
+        transfer.tryEmitValue("listo");
+        assertTrue(credited.get());
+    }
+
+    @Test
+    void crossedTransfersDoNotDeadlock() {
+        MovementLaneImpl lane = lane(Duration.ofSeconds(5));
+
+        Long done = Flux.range(0, 200)
+                .flatMap(i -> (i % 2 == 0
+                        ? lane.execute("1", "2", () -> Mono.just(i).delayElement(Duration.ofMillis(1)))
+                        : lane.execute("2", "1", () -> Mono.just(i).delayElement(Duration.ofMillis(1))))
+                        .subscribeOn(Schedulers.parallel()))
+                .count()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(200, done);
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.banck.accountmovements.aplication.impl;
+
+import com.banck.accountmovements.domain.Movement;
+import com.banck.accountmovements.domain.MovementQuery;
+import com.banck.accountmovements.infraestructure.mockRepository.MockMovementRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovementOperationsImplTest {
+
+    static final String ACCOUNT = "78345212-653";
+
+    final AtomicInteger reads = new AtomicInteger();
+    final Sinks.Many<Movement> changes = Sinks.many().multicast().directBestEffort();
+    final List<Movement> stored = new ArrayList<>();
+
+    final MockMovementRepository repository = new MockMovementRepository() {
+        @Override
+        public Flux<Movement> listByAccount(String account, MovementQuery query) {
+            return Flux.defer(() -> {
+                reads.incrementAndGet();
+                List<Movement> newestFirst = new ArrayList<>(stored);
+                Collections.reverse(newestFirst);
+                return Flux.fromIterable(newestFirst).take(query.getSize());
+            });
+        }
+
+        @Override
+        public Flux<Movement> listByAccount(String account) {
+            return Flux.defer(() -> {
+                reads.incrementAndGet();
+                return Flux.fromIterable(stored);
+            });
+        }
+
+        @Override
+        public Flux<Movement> changes() {
+            return changes.asFlux();
+        }
+
+        @Override
+        public Mono<Boolean> changeStreamsSupported() {
+            return Mono.just(supported);
+        }
+    };
+
+    boolean supported = true;
+
+    /**
+     * Abre el change stream y entrega un primer evento de otra cuenta.
+     */
+    MovementOperationsImpl operations(int depth) {
+        MovementOperationsImpl operations = unwatched(depth);
+        operations.watch();
+        Movement other = new Movement();
+        other.setMovement("otro");
+        other.setAccount("00000000-000");
+        changes.tryEmitNext(other);
+        return operations;
+    }
+
+    MovementOperationsImpl unwatched(int depth) {
+        return new MovementOperationsImpl(repository, new SimpleMeterRegistry(), true, depth, 1000, Duration.ofMinutes(5));
+    }
+
+    Movement movement(int i) {
+        Movement movement = new Movement();
+        movement.setMovement(String.valueOf(i));
+        movement.setAccount(ACCOUNT);
+        movement.setCustomer("78345212");
+        movement.setTimestamp(System.currentTimeMillis());
+        return movement;
+    }
+
+    MovementQuery firstPage(int size) {
+        MovementQuery query = new MovementQuery();
+        query.setSize(size);
+        return query;
+    }
+
+    @Test
+    void repeatedReadsAreServedFromMemory() {
+        for (int i = 0; i < 3; i++) {
+            stored.add(movement(i));
+        }
+        MovementOperationsImpl operations = operations(10);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(2, operations.listByAccount(ACCOUNT, firstPage(2)).count().block());
+            assertEquals(List.of("0", "1", "2"), operations.listByAccount(ACCOUNT).map(Movement::getMovement).collectList().block());
+        }
+
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    void changeStreamEventInvalidatesTheAccount() {
+        stored.add(movement(0));
+        MovementOperationsImpl operations = operations(10);
+        assertEquals(1, operations.listByAccount(ACCOUNT).count().block());
+
+        Movement created = movement(1);
+        stored.add(created);
+        changes.tryEmitNext(created);
+
+        assertEquals(List.of("1", "0"), operations.listByAccount(ACCOUNT, firstPage(10)).map(Movement::getMovement).collectList().block());
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    void historyLongerThanTheCacheIsReadFromMongo() {
+        for (int i = 0; i < 5; i++) {
+            stored.add(movement(i));
+        }
+        MovementOperationsImpl operations = operations(3);
+
+        assertEquals(5, operations.listByAccount(ACCOUNT).count().block());
+        assertEquals(5, operations.listByAccount(ACCOUNT).count().block());
+
+        // Una carga de la cache y una lectura completa por consulta.
+        assertEquals(3, reads.get());
+    }
+
+    @Test
+    void readsGoToMongoUntilTheStreamDeliversAnEvent() {
+        stored.add(movement(0));
+        MovementOperationsImpl operations = unwatched(10);
+        operations.watch();
+
+        operations.listByAccount(ACCOUNT).blockLast();
+        operations.listByAccount(ACCOUNT).blockLast();
+        assertEquals(2, reads.get());
+
+        changes.tryEmitNext(movement(1));
+        operations.listByAccount(ACCOUNT).blockLast();
+        operations.listByAccount(ACCOUNT).blockLast();
+        assertEquals(3, reads.get());
+    }
+
+    @Test
+    void cacheStaysOffWithoutChangeStreams() {
+        supported = false;
+        stored.add(movement(0));
+        MovementOperationsImpl operations = unwatched(10);
+        operations.watch();
+        changes.tryEmitNext(movement(1));
+
+        operations.listByAccount(ACCOUNT).blockLast();
+        operations.listByAccount(ACCOUNT).blockLast();
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    void loadFinishedAfterAnEvictionIsNotKept() {
+        stored.add(movement(0));
+        Sinks.One<Movement> slow = Sinks.one();
+        MockMovementRepository slowRepository = new MockMovementRepository() {
+            @Override
+            public Flux<Movement> listByAccount(String account, MovementQuery query) {
+                reads.incrementAndGet();
+                return slow.asMono().flux();
+            }
+
+            @Override
+            public Flux<Movement> changes() {
+                return changes.asFlux();
+            }
+
+            @Override
+            public Mono<Boolean> changeStreamsSupported() {
+                return Mono.just(true);
+            }
+        };
+        MovementOperationsImpl operations = new MovementOperationsImpl(slowRepository, new SimpleMeterRegistry(), true, 10, 1000, Duration.ofMinutes(5));
+        operations.watch();
+        changes.tryEmitNext(movement(1));
+        Mono<List<Movement>> loading = operations.listByAccount(ACCOUNT, firstPage(10)).collectList().cache();
+        loading.subscribe();
+
+        operations.create(movement(2)).block();
+        slow.tryEmitValue(movement(0));
+
+        assertEquals(1, loading.block().size());
+        assertEquals(1, reads.get());
+        operations.listByAccount(ACCOUNT, firstPage(10)).collectList().block();
+        assertEquals(2, reads.get());
+    }
+
+}
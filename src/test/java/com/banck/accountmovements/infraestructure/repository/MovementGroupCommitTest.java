@@ -0,0 +1,135 @@
+package com.banck.accountmovements.infraestructure.repository;
+
+import com.banck.accountmovements.infraestructure.model.dao.MovementDao;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.result.InsertManyResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Prueba el agrupamiento sobre una coleccion simulada que registra el tamano
+ * de cada insercion.
+ */
+class MovementGroupCommitTest {
+
+    ReactiveMongoTemplate template = mock(ReactiveMongoTemplate.class);
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    List<Integer> inserts = new CopyOnWriteArrayList<>();
+    List<List<MovementDao>> applied = new CopyOnWriteArrayList<>();
+    List<Set<String>> reconciled = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void collection() {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        when(template.getConverter()).thenReturn(mock(MongoConverter.class));
+        when(template.getCollectionName(MovementDao.class)).thenReturn("movement");
+        when(template.getCollection("movement")).thenReturn(Mono.just(collection));
+        when(collection.insertMany(anyList(), any(InsertManyOptions.class))).thenAnswer(invocation -> {
+            inserts.add(invocation.<List<?>>getArgument(0).size());
+            return Mono.just(mock(InsertManyResult.class));
+        });
+    }
+
+    MovementGroupCommit groupCommit(int maxBatch, Duration linger,
+            Function<List<MovementDao>, Mono<Void>> afterInsert, Function<Set<String>, Mono<Void>> reconcile) {
+        return new MovementGroupCommit(template, registry, maxBatch, linger, 4, afterInsert, reconcile);
+    }
+
+    Mono<Void> apply(List<MovementDao> movements) {
+        applied.add(movements);
+        return Mono.empty();
+    }
+
+    Mono<Void> reconcile(Set<String> accounts) {
+        reconciled.add(accounts);
+        return Mono.empty();
+    }
+
+    MovementDao movement(int i) {
+        MovementDao md = new MovementDao();
+        md.setMovement("M" + i);
+        md.setAccount("A" + (i % 2));
+        md.setAmountMinor(100L);
+        md.setTimestamp(System.currentTimeMillis());
+        return md;
+    }
+
+    @Test
+    void concurrentInsertsAreWrittenInBatchesOfMaxBatch() {
+        MovementGroupCommit groupCommit = groupCommit(4, Duration.ofSeconds(5), this::apply, this::reconcile);
+
+        List<MovementDao> saved = Flux.range(0, 8)
+                .flatMap(i -> groupCommit.insert(movement(i)))
+                .collectList()
+                .block(Duration.ofSeconds(2));
+
+        assertEquals(8, saved.size());
+        assertEquals(List.of(4, 4), inserts);
+        assertEquals(8, applied.stream().mapToInt(List::size).sum());
+        assertEquals(2, registry.get("movement.group-commit.batch.size").summary().count());
+    }
+
+    @Test
+    void lingerFlushesAPartialBatch() {
+        MovementGroupCommit groupCommit = groupCommit(100, Duration.ofMillis(50), this::apply, this::reconcile);
+
+        MovementDao saved = groupCommit.insert(movement(1)).block(Duration.ofSeconds(2));
+
+        assertEquals("M1", saved.getMovement());
+        assertEquals(List.of(1), inserts);
+    }
+
+    @Test
+    void callersSucceedWhenTheBatchIsStoredButApplyFails() {
+        Sinks.One<Set<String>> done = Sinks.one();
+        MovementGroupCommit groupCommit = groupCommit(4, Duration.ofSeconds(5),
+                movements -> Mono.error(new IllegalStateException("Fallo el saldo")),
+                accounts -> Mono.fromRunnable(() -> done.tryEmitValue(accounts)));
+
+        List<MovementDao> saved = Flux.range(0, 4)
+                .flatMap(i -> groupCommit.insert(movement(i)))
+                .collectList()
+                .block(Duration.ofSeconds(2));
+
+        assertEquals(Set.of("M0", "M1", "M2", "M3"), saved.stream().map(MovementDao::getMovement).collect(Collectors.toSet()));
+        assertEquals(Set.of("A0", "A1"), done.asMono().block(Duration.ofSeconds(2)));
+        assertEquals(1, registry.get("movement.group-commit.reconciled").counter().count());
+    }
+
+    @Test
+    void failedReconcilesAreRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        Sinks.One<Integer> done = Sinks.one();
+        MovementGroupCommit groupCommit = groupCommit(1, Duration.ofSeconds(5),
+                movements -> Mono.error(new IllegalStateException("Fallo el saldo")),
+                accounts -> attempts.incrementAndGet() == 1
+                ? Mono.error(new IllegalStateException("Fallo la reconciliacion"))
+                : Mono.fromRunnable(() -> done.tryEmitValue(attempts.get())));
+
+        groupCommit.insert(movement(1)).block(Duration.ofSeconds(2));
+
+        assertEquals(2, done.asMono().block(Duration.ofSeconds(5)));
+    }
+
+}
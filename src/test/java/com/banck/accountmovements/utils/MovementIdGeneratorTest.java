@@ -0,0 +1,70 @@
+package com.banck.accountmovements.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovementIdGeneratorTest {
+
+    static final int THREADS = 8;
+    static final int PER_THREAD = 500_000;
+
+    @Test
+    void concurrentIdsAreUniqueAndIncreasingPerThread() throws Exception {
+        MovementIdGenerator generator = new MovementIdGenerator(7);
+        long[][] ids = new long[THREADS][PER_THREAD];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            long[] out = ids[t];
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < PER_THREAD; i++) {
+                    out[i] = generator.nextId();
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long[] all = new long[THREADS * PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 1; i < PER_THREAD; i++) {
+                assertTrue(ids[t][i] > ids[t][i - 1]);
+            }
+            System.arraycopy(ids[t], 0, all, t * PER_THREAD, PER_THREAD);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertTrue(all[i] != all[i - 1], "Identificador repetido: " + all[i]);
+        }
+    }
+
+    @Test
+    void textIdsSortLikeTheirNumbers() {
+        MovementIdGenerator generator = new MovementIdGenerator(7);
+        String first = generator.next();
+        String second = generator.next();
+
+        assertEquals(19, first.length());
+        assertTrue(first.compareTo(second) < 0);
+        assertEquals(7, (Long.parseLong(first) >>> 12) & 1023);
+    }
+
+    @Test
+    void nodeMustBeConfigured() {
+        assertThrows(IllegalStateException.class, () -> new MovementIdGenerator(-1));
+        assertThrows(IllegalStateException.class, () -> new MovementIdGenerator(1024));
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.banck.accountmovements.utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Mono;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovementStagesTest {
+
+    @Test
+    void stagesAreRecordedWithAccountAndScannedDocuments() throws Exception {
+        MovementStages stages = new MovementStages(new MockEnvironment());
+
+        List<RecordedEvent> events = record(() -> {
+            stages.record("create", "validation", "78345212-653", () -> true);
+            stages.operation("create", stages.time("balance", "78345212-653",
+                    Mono.just(100L).flatMap(balance -> stages.scanned(42).thenReturn(balance))))
+                    .block();
+        });
+
+        assertEquals(2, events.size());
+        RecordedEvent validation = events.stream().filter(e -> "validation".equals(e.getString("stage"))).findFirst().get();
+        assertEquals("create", validation.getString("operation"));
+        assertEquals("78345212-653", validation.getString("account"));
+        RecordedEvent balance = events.stream().filter(e -> "balance".equals(e.getString("stage"))).findFirst().get();
+        assertEquals("create", balance.getString("operation"));
+        assertEquals("78345212-653", balance.getString("account"));
+        assertEquals(42, balance.getLong("scanned"));
+    }
+
+    @Test
+    void switchedOffStagesEmitNothing() throws Exception {
+        MovementStages stages = new MovementStages(new MockEnvironment().withProperty("movement.jfr.enabled", "false"));
+
+        List<RecordedEvent> events = record(() -> {
+            stages.record("create", "validation", "78345212-653", () -> true);
+            stages.time("balance", "78345212-653", Mono.just(100L)).block();
+        });
+
+        assertTrue(events.isEmpty());
+    }
+
+    List<RecordedEvent> record(Runnable action) throws Exception {
+        Path file = Files.createTempFile("movement-stages", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(MovementStageEvent.class);
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        try {
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> MovementStageEvent.NAME.equals(e.getEventType().getName()))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
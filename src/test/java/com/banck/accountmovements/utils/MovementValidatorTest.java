@@ -0,0 +1,55 @@
+package com.banck.accountmovements.utils;
+
+import com.banck.accountmovements.domain.Movement;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovementValidatorTest {
+
+    Movement deposit() {
+        Movement movement = new Movement();
+        movement.setConcept("DP");
+        movement.setCustomer("78345212");
+        movement.setAccount("78345212-653");
+        movement.setAmount(300.50);
+        return movement;
+    }
+
+    @Test
+    void validMovementPasses() {
+        assertTrue(MovementValidator.CREATE.validate(deposit()).isEmpty());
+    }
+
+    @Test
+    void firstFailingRuleIsReportedWithTheSameResult() {
+        Movement movement = deposit();
+        movement.setConcept("XX");
+        movement.setAccount(null);
+
+        assertEquals("Los codigos de Concepto son: \n" + MovementValidator.CONCEPTS,
+                MovementValidator.CREATE.validate(movement).get());
+        assertSame(MovementValidator.CREATE.validate(movement), MovementValidator.CREATE.validate(movement));
+    }
+
+    @Test
+    void transferToOtherCustomerRequiresBeneficiary() {
+        Movement movement = deposit();
+        movement.setTransferAccount("78345299-100");
+
+        assertTrue(MovementValidator.TRANSFER_MY_ACCOUNT.validate(movement).isEmpty());
+        assertEquals("Debe ingresar Identificacion Beneficiario, Ejemplo: { \"transferCustomer\": \"78345212\" }",
+                MovementValidator.TRANSFER_OTHER_ACCOUNT.validate(movement).get());
+    }
+
+    @Test
+    void conceptsAreLookedUpByCode() {
+        assertSame(Concept.PAYMENT, Concept.of("DP"));
+        assertSame(Concept.TRANSFER, Concept.of("TF"));
+        assertNull(Concept.of("XX"));
+        assertNull(Concept.of(null));
+    }
+
+}